@@ -0,0 +1,259 @@
+package com.example.xavierproject;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Address;
+import android.location.Geocoder;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reverse-geocoded addresses, cached in memory and across launches.
+ * Lookups are keyed by a cell of about 100 m, so reports on the same
+ * street share one Geocoder call, and run on a small bounded pool.
+ */
+public class AddressCache {
+
+    private static final String TAG = "AddressCache";
+    private static final String PREFS_NAME = "AddressCache";
+
+    // 3 decimal places, roughly 110 m of latitude
+    private static final double CELL_DEGREES = 0.001;
+    private static final int MEMORY_ENTRIES = 500;
+    private static final int GEOCODER_THREADS = 2;
+    // Queued prefetches beyond this are dropped, oldest first, since the user has scrolled past them
+    private static final int MAX_QUEUED = 32;
+    // Place names rarely change, but don't keep them forever
+    private static final long MAX_ENTRY_AGE_MS = 90 * 24 * 60 * 60 * 1000L;
+    private static final long MISS_RETRY_MS = 5 * 60 * 1000L;
+
+    private static AddressCache instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final LruCache<String, String> memory = new LruCache<>(MEMORY_ENTRIES);
+    // Cells that just failed, e.g. offline, so rebinding rows doesn't retry them every time
+    private final LruCache<String, Long> misses = new LruCache<>(MEMORY_ENTRIES);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Lookups in flight, with everyone waiting on each. Only touched on the main thread.
+    private final Map<String, List<Callback>> pending = new HashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    public interface Callback {
+        /**
+         * Called on the main thread, with null if the address couldn't be found
+         */
+        void onAddress(String address);
+    }
+
+    public static synchronized AddressCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new AddressCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AddressCache(Context context) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<>(MAX_QUEUED);
+        this.executor = new ThreadPoolExecutor(GEOCODER_THREADS, GEOCODER_THREADS, 30, TimeUnit.SECONDS, queue,
+                (runnable, pool) -> {
+                    // Drop the oldest queued lookup, its waiters get no address
+                    Runnable dropped = pool.getQueue().poll();
+                    if (dropped instanceof Lookup) {
+                        String droppedKey = ((Lookup) dropped).key;
+                        mainHandler.post(() -> deliver(droppedKey, null, false));
+                    }
+                    pool.execute(runnable);
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Address already in memory, without any lookup. Safe to call while binding rows.
+     */
+    public String peek(double latitude, double longitude) {
+        return memory.get(keyOf(latitude, longitude));
+    }
+
+    /**
+     * Find the address for a location, from the cache when possible
+     */
+    public void lookup(double latitude, double longitude, Callback callback) {
+        String key = keyOf(latitude, longitude);
+        String cached = memory.get(key);
+        if (cached != null) {
+            if (callback != null) callback.onAddress(cached);
+            return;
+        }
+        if (recentlyMissed(key)) {
+            if (callback != null) callback.onAddress(null);
+            return;
+        }
+
+        List<Callback> waiting = pending.get(key);
+        if (waiting != null) {
+            // Same cell already being looked up
+            if (callback != null) waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        if (callback != null) waiting.add(callback);
+        pending.put(key, waiting);
+
+        executor.execute(new Lookup(key, latitude, longitude));
+    }
+
+    /**
+     * Warm the cache for locations about to be shown
+     * @param locations {latitude, longitude} pairs
+     */
+    public void prefetch(List<double[]> locations) {
+        for (double[] location : locations) {
+            String key = keyOf(location[0], location[1]);
+            if (memory.get(key) == null && !recentlyMissed(key) && !pending.containsKey(key)) {
+                lookup(location[0], location[1], null);
+            }
+        }
+    }
+
+    /**
+     * Whether a lookup of this cell failed too recently to try again
+     */
+    private boolean recentlyMissed(String key) {
+        Long missedAt = misses.get(key);
+        if (missedAt == null) return false;
+        if (System.currentTimeMillis() - missedAt < MISS_RETRY_MS) return true;
+        misses.remove(key);
+        return false;
+    }
+
+    private class Lookup implements Runnable {
+        final String key;
+        final double latitude;
+        final double longitude;
+
+        Lookup(String key, double latitude, double longitude) {
+            this.key = key;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        @Override
+        public void run() {
+            String address = readStored(key);
+            if (address == null) {
+                address = geocode(latitude, longitude);
+                if (address != null) {
+                    store(key, address);
+                }
+            }
+            final String result = address;
+            mainHandler.post(() -> deliver(key, result, true));
+        }
+    }
+
+    /**
+     * @param attempted False if the lookup was dropped before it ran, so it isn't counted as a miss
+     */
+    private void deliver(String key, String address, boolean attempted) {
+        List<Callback> waiting = pending.remove(key);
+        if (address != null) {
+            memory.put(key, address);
+        } else if (attempted) {
+            misses.put(key, System.currentTimeMillis());
+        }
+        if (waiting == null) return;
+        for (Callback callback : waiting) {
+            callback.onAddress(address);
+        }
+    }
+
+    private static String keyOf(double latitude, double longitude) {
+        return Math.round(latitude / CELL_DEGREES) + "," + Math.round(longitude / CELL_DEGREES);
+    }
+
+    private String readStored(String key) {
+        String json = prefs.getString(key, null);
+        if (json == null) return null;
+        try {
+            JSONObject object = new JSONObject(json);
+            if (System.currentTimeMillis() - object.optLong("savedAt", 0) < MAX_ENTRY_AGE_MS) {
+                return object.getString("address");
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Discarding unreadable address entry: " + e.getMessage());
+        }
+        prefs.edit().remove(key).apply();
+        return null;
+    }
+
+    private void store(String key, String address) {
+        try {
+            JSONObject object = new JSONObject();
+            object.put("address", address);
+            object.put("savedAt", System.currentTimeMillis());
+            prefs.edit().putString(key, object.toString()).apply();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to store address: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Blocking Geocoder call, runs on the pool
+     */
+    private String geocode(double latitude, double longitude) {
+        if (!Geocoder.isPresent()) return null;
+        try {
+            Geocoder geocoder = new Geocoder(context, Locale.getDefault());
+            List<Address> addresses = geocoder.getFromLocation(latitude, longitude, 1);
+            if (addresses == null || addresses.isEmpty()) return null;
+            return format(addresses.get(0));
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Geocoding error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Locality, city and state, e.g. "Andheri West, Mumbai, Maharashtra"
+     */
+    private static String format(Address address) {
+        StringBuilder locationBuilder = new StringBuilder();
+
+        if (address.getSubLocality() != null) {
+            locationBuilder.append(address.getSubLocality()).append(", ");
+        } else if (address.getLocality() != null) {
+            locationBuilder.append(address.getLocality()).append(", ");
+        }
+
+        if (address.getLocality() != null && address.getSubLocality() != null) {
+            locationBuilder.append(address.getLocality()).append(", ");
+        }
+
+        if (address.getAdminArea() != null) {
+            locationBuilder.append(address.getAdminArea());
+        }
+
+        String locationText = locationBuilder.toString();
+        if (locationText.endsWith(", ")) {
+            locationText = locationText.substring(0, locationText.length() - 2);
+        }
+        return locationText.isEmpty() ? null : locationText;
+    }
+}
@@ -34,6 +34,9 @@ public class AdminHomeFragment extends Fragment {
         loadUserData();
         setupClickListeners();
 
+        // Reports from before the geohash index and city shards need their entries written once
+        ReportIndexBackfill.runIfNeeded(requireContext());
+
         return view;
     }
 
@@ -58,28 +61,22 @@ public class AdminHomeFragment extends Fragment {
     }
 
     private void showCitySelector(String actionType) {
-        String[] cities = {"Mumbai", "Delhi", "Bangalore", "Hyderabad", "Chennai", "Kolkata", "Pune", "Ahmedabad"};
+        // The queue also lists reports from outside every city
+        String[] cities = actionType.equals("complaints")
+                ? ReportCityShard.queueNames() : ReportCityShard.cityNames();
 
         MaterialAlertDialogBuilder builder = new MaterialAlertDialogBuilder(requireContext());
         builder.setTitle("Select City");
         builder.setItems(cities, (dialog, which) -> {
             String selectedCity = cities[which];
-            if (selectedCity.equals("Mumbai")) {
-                if (actionType.equals("maps")) {
-                    Intent intent = new Intent(getActivity(), MapsActivity.class);
-                    intent.putExtra("CITY_NAME", selectedCity);
-                    startActivity(intent);
-                } else if (actionType.equals("complaints")) {
-                    Intent intent = new Intent(getActivity(), ComplaintsActivity.class);
-                    intent.putExtra("CITY_NAME", selectedCity);
-                    startActivity(intent);
-                }
-            } else {
-                new MaterialAlertDialogBuilder(requireContext())
-                        .setTitle("Coming Soon")
-                        .setMessage(selectedCity + " is currently not available. We're working on it!")
-                        .setPositiveButton("OK", null)
-                        .show();
+            if (actionType.equals("maps")) {
+                Intent intent = new Intent(getActivity(), MapsActivity.class);
+                intent.putExtra("CITY_NAME", selectedCity);
+                startActivity(intent);
+            } else if (actionType.equals("complaints")) {
+                Intent intent = new Intent(getActivity(), ComplaintsActivity.class);
+                intent.putExtra("CITY_NAME", selectedCity);
+                startActivity(intent);
             }
         });
         builder.setNegativeButton("Cancel", null);
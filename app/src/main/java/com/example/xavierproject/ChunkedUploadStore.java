@@ -0,0 +1,119 @@
+package com.example.xavierproject;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.util.UUID;
+
+/**
+ * Persists the state of chunked Cloudinary uploads so that an interrupted
+ * upload can resume from the last acknowledged chunk, even after the app
+ * process has been killed.
+ */
+public class ChunkedUploadStore {
+
+    private static final String TAG = "ChunkedUploadStore";
+    private static final String PREFS_NAME = "ChunkedUploads";
+
+    // Cloudinary drops incomplete chunked uploads after a while, so don't resume stale ones
+    private static final long MAX_SESSION_AGE_MS = 24 * 60 * 60 * 1000L;
+
+    private final SharedPreferences prefs;
+
+    public ChunkedUploadStore(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Get the session for this source, or start a new one at offset 0
+     * @param sourceKey Stable identifier of the upload source (usually the image URI)
+     * @param totalBytes Total size of the upload
+     */
+    public synchronized Session findOrCreate(String sourceKey, long totalBytes) {
+        String key = sessionKey(sourceKey, totalBytes);
+        String json = prefs.getString(key, null);
+
+        if (json != null) {
+            try {
+                JSONObject object = new JSONObject(json);
+                long updatedAt = object.optLong("updatedAt", 0);
+                if (System.currentTimeMillis() - updatedAt < MAX_SESSION_AGE_MS) {
+                    Session session = new Session(key, object.getString("uploadId"),
+                            object.optLong("offset", 0), totalBytes);
+                    Log.d(TAG, "Resuming upload " + session.uploadId + " at byte " + session.offset);
+                    return session;
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Discarding unreadable upload session: " + e.getMessage());
+            }
+        }
+
+        Session session = new Session(key, UUID.randomUUID().toString().replace("-", ""), 0, totalBytes);
+        save(session);
+        return session;
+    }
+
+    /**
+     * Record that every byte before {@code offset} has been acknowledged by Cloudinary
+     */
+    public synchronized void markAcknowledged(Session session, long offset) {
+        session.offset = offset;
+        save(session);
+    }
+
+    /**
+     * Forget a session once the upload has completed
+     */
+    public synchronized void remove(Session session) {
+        prefs.edit().remove(session.key).apply();
+    }
+
+    private void save(Session session) {
+        try {
+            JSONObject object = new JSONObject();
+            object.put("uploadId", session.uploadId);
+            object.put("offset", session.offset);
+            object.put("updatedAt", System.currentTimeMillis());
+            // commit() so the acknowledged offset survives an immediate process death
+            prefs.edit().putString(session.key, object.toString()).commit();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to save upload session: " + e.getMessage());
+        }
+    }
+
+    private static String sessionKey(String sourceKey, long totalBytes) {
+        return sourceKey + "|" + totalBytes;
+    }
+
+    /**
+     * State of one chunked upload
+     */
+    public static class Session {
+        private final String key;
+        private final String uploadId;
+        private final long totalBytes;
+        private long offset;
+
+        Session(String key, String uploadId, long offset, long totalBytes) {
+            this.key = key;
+            this.uploadId = uploadId;
+            this.offset = offset;
+            this.totalBytes = totalBytes;
+        }
+
+        public String getUploadId() {
+            return uploadId;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+    }
+}
@@ -7,16 +7,11 @@ import android.os.Looper;
 import android.util.Log;
 import android.webkit.MimeTypeMap;
 
-import androidx.annotation.NonNull;
-
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
-import okhttp3.Callback;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.OkHttpClient;
@@ -33,7 +28,13 @@ public class CloudinaryHelper {
     private static final String UPLOAD_PRESET = BuildConfig.UPLOAD_PRESET;
     private static final String UPLOAD_URL = "https://api.cloudinary.com/v1_1/" + CLOUD_NAME + "/image/upload";
 
+    // Cloudinary's minimum chunk size, only the last chunk may be smaller
+    public static final int DEFAULT_CHUNK_SIZE = 5 * 1024 * 1024;
+    private static final int CHUNK_MAX_ATTEMPTS = 3;
+    private static final long CHUNK_RETRY_DELAY_MS = 2000;
+
     private static OkHttpClient client;
+    private static volatile ImagePreprocessor.Options preprocessOptions = new ImagePreprocessor.Options();
     private static Handler mainHandler = new Handler(Looper.getMainLooper());
 
     /**
@@ -51,14 +52,23 @@ public class CloudinaryHelper {
         return client;
     }
 
+    /**
+     * Set the downscale/recompression limits applied before every upload
+     * @param options Limits to apply, or null to upload original images unchanged
+     */
+    public static void setPreprocessOptions(ImagePreprocessor.Options options) {
+        preprocessOptions = options;
+    }
+
     /**
      * Upload image to Cloudinary using unsigned upload with OkHttp
      * @param context Application context
      * @param imageUri URI of the image to upload
      * @param callback Callback to handle upload result
+     * @return Handle to cancel, pause or resume the upload
      */
-    public static void uploadImage(Context context, Uri imageUri, CloudinaryUploadCallback callback) {
-        uploadImage(context, imageUri, UPLOAD_PRESET, callback);
+    public static UploadManager.Handle uploadImage(Context context, Uri imageUri, CloudinaryUploadCallback callback) {
+        return uploadImage(context, imageUri, UPLOAD_PRESET, callback);
     }
 
     /**
@@ -67,126 +77,421 @@ public class CloudinaryHelper {
      * @param imageUri URI of the image to upload
      * @param uploadPreset Your unsigned upload preset name
      * @param callback Callback to handle upload result
+     * @return Handle to cancel, pause or resume the upload
      */
-    public static void uploadImage(Context context, Uri imageUri, String uploadPreset, CloudinaryUploadCallback callback) {
+    public static UploadManager.Handle uploadImage(Context context, Uri imageUri, String uploadPreset, CloudinaryUploadCallback callback) {
         if (imageUri == null) {
             runOnMainThread(() -> callback.onError("Image URI is null"));
-            return;
+            return null;
         }
 
         runOnMainThread(() -> callback.onStart());
 
-        new Thread(() -> {
-            File imageFile = null;
-            try {
-                // Convert URI to File
-                imageFile = getFileFromUri(context, imageUri);
-                if (imageFile == null) {
-                    final String error = "Failed to process image file";
-                    runOnMainThread(() -> callback.onError(error));
-                    return;
-                }
+        return UploadManager.getInstance().submit(UploadManager.Priority.INTERACTIVE, new UploadManager.UploadJob() {
+            @Override
+            public boolean run(UploadManager.Handle handle) {
+                return runSingleUpload(handle, context, imageUri, uploadPreset, callback);
+            }
+
+            @Override
+            public void onCancelled() {
+                runOnMainThread(() -> callback.onError("Upload cancelled"));
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                runOnMainThread(() -> callback.onError("Upload failed: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Upload image to Cloudinary in fixed-size chunks, resuming an earlier
+     * interrupted upload of the same image if one was recorded
+     * @param context Application context
+     * @param imageUri URI of the image to upload
+     * @param uploadPreset Your unsigned upload preset name
+     * @param callback Callback to handle upload result
+     * @return Handle to cancel, pause or resume the upload
+     */
+    public static UploadManager.Handle uploadImageChunked(Context context, Uri imageUri, String uploadPreset, CloudinaryUploadCallback callback) {
+        return uploadImageChunked(context, imageUri, uploadPreset, DEFAULT_CHUNK_SIZE,
+                UploadManager.Priority.INTERACTIVE, callback);
+    }
+
+    /**
+     * Upload image to Cloudinary in chunks of the given size
+     * @param chunkSize Bytes per chunk, Cloudinary rejects chunks under 5 MB except the last one
+     * @param priority Queue priority, background retries should not hold up interactive uploads
+     */
+    public static UploadManager.Handle uploadImageChunked(Context context, Uri imageUri, String uploadPreset,
+                                                          int chunkSize, UploadManager.Priority priority,
+                                                          CloudinaryUploadCallback callback) {
+        if (imageUri == null) {
+            runOnMainThread(() -> callback.onError("Image URI is null"));
+            return null;
+        }
+
+        runOnMainThread(() -> callback.onStart());
+
+        return UploadManager.getInstance().submit(priority, new UploadManager.UploadJob() {
+            @Override
+            public boolean run(UploadManager.Handle handle) {
+                return runChunkedUpload(handle, context, imageUri, uploadPreset, chunkSize, callback);
+            }
+
+            @Override
+            public void onCancelled() {
+                runOnMainThread(() -> callback.onError("Upload cancelled"));
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                runOnMainThread(() -> callback.onError("Upload failed: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Send the whole image in one request, on an upload pool thread
+     * @return true if a result was delivered to the callback, false if paused or cancelled
+     */
+    private static boolean runSingleUpload(UploadManager.Handle handle, Context context, Uri imageUri,
+                                           String uploadPreset, CloudinaryUploadCallback callback) {
+        try {
+            // Downscale and recompress before sending, falls back to the original
+            ImagePreprocessor.Result processed = preprocess(context, imageUri);
+            Uri uploadUri = processed != null ? processed.getUri() : imageUri;
+
+            // Skip the upload entirely if this exact content is already on Cloudinary
+            UploadDedupIndex dedupIndex = new UploadDedupIndex(context);
+            String contentHash = UploadDedupIndex.sha256(context.getContentResolver(), uploadUri);
+            if (deliverExisting(dedupIndex, contentHash, processed, callback)) {
+                return true;
+            }
+
+            // Get MIME type and extension
+            String mimeType = processed != null ? processed.getMimeType()
+                    : context.getContentResolver().getType(imageUri);
+            String extension = MimeTypeMap.getSingleton().getExtensionFromMimeType(mimeType);
+            if (extension == null) {
+                extension = "jpg";
+            }
+
+            // Determine media type
+            MediaType mediaType = MediaType.parse(mimeType != null ? mimeType : "image/*");
+
+            // Stream the image straight from the ContentResolver
+            ContentUriRequestBody fileBody =
+                    new ContentUriRequestBody(context.getContentResolver(), uploadUri, mediaType);
+            UploadProgressTracker tracker =
+                    new UploadProgressTracker(fileBody.contentLength(), 0, callback::onProgress);
+
+            // Build multipart request
+            RequestBody requestBody = buildUploadBody("image." + extension,
+                    new CountingRequestBody(fileBody, 0, tracker), uploadPreset, contentHash);
+
+            Request request = new Request.Builder()
+                    .url(UPLOAD_URL)
+                    .post(requestBody)
+                    .build();
+
+            Log.d(TAG, "Starting upload to Cloudinary...");
+            Log.d(TAG, "File size: " + fileBody.contentLength() + " bytes");
+            tracker.update(0);
 
-                // Get MIME type and extension
-                String mimeType = context.getContentResolver().getType(imageUri);
-                String extension = MimeTypeMap.getSingleton().getExtensionFromMimeType(mimeType);
-                if (extension == null) {
-                    extension = "jpg";
+            // Execute upload
+            Call call = getClient().newCall(request);
+            if (!handle.track(call)) {
+                return false;
+            }
+
+            try (Response response = call.execute()) {
+                if (response.isSuccessful() && response.body() != null) {
+                    String responseData = response.body().string();
+                    Log.d(TAG, "Upload response: " + responseData);
+
+                    // Parse JSON response
+                    JSONObject jsonObject = new JSONObject(responseData);
+                    String imageUrl = jsonObject.getString("secure_url");
+                    String publicId = jsonObject.getString("public_id");
+
+                    // Get additional metadata
+                    int width = jsonObject.optInt("width", 0);
+                    int height = jsonObject.optInt("height", 0);
+                    long bytes = jsonObject.optLong("bytes", 0);
+
+                    Log.d(TAG, "Upload successful!");
+                    Log.d(TAG, "Image URL: " + imageUrl);
+                    Log.d(TAG, "Public ID: " + publicId);
+                    Log.d(TAG, "Dimensions: " + width + "x" + height);
+                    Log.d(TAG, "Size: " + bytes + " bytes");
+
+                    if (contentHash != null) dedupIndex.record(contentHash, imageUrl, publicId);
+                    ImagePreprocessor.release(processed);
+                    tracker.complete();
+                    runOnMainThread(() -> callback.onSuccess(imageUrl, publicId));
+                } else {
+                    String errorBody = response.body() != null ? response.body().string() : "Unknown error";
+                    Log.e(TAG, "Upload failed with code: " + response.code());
+                    Log.e(TAG, "Error body: " + errorBody);
+
+                    final String errorMsg = parseErrorMessage(response.code(), errorBody);
+                    runOnMainThread(() -> callback.onError(errorMsg));
                 }
+            }
+            return true;
+        } catch (IOException e) {
+            if (handle.isStopped()) {
+                return false;
+            }
+            Log.e(TAG, "Upload failed: " + e.getMessage());
+            final String errorMsg = "Network error: " + e.getMessage();
+            runOnMainThread(() -> callback.onError(errorMsg));
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Upload failed: " + e.getMessage());
+            e.printStackTrace();
+            final String errorMsg = "Error processing response: " + e.getMessage();
+            runOnMainThread(() -> callback.onError(errorMsg));
+            return true;
+        }
+    }
 
-                // Determine media type
-                MediaType mediaType = MediaType.parse(mimeType != null ? mimeType : "image/*");
-
-                // Build multipart request
-                final File finalImageFile = imageFile;
-                RequestBody requestBody = new MultipartBody.Builder()
-                        .setType(MultipartBody.FORM)
-                        .addFormDataPart("file", "image." + extension,
-                                RequestBody.create(finalImageFile, mediaType))
-                        .addFormDataPart("upload_preset", uploadPreset)
-                        .addFormDataPart("folder", "XavierProject/reports")
-                        .addFormDataPart("resource_type", "image")
-                        .build();
+    /**
+     * Send the image as Content-Range chunks, on an upload pool thread
+     * @return true if a result was delivered to the callback, false if paused or cancelled
+     */
+    private static boolean runChunkedUpload(UploadManager.Handle handle, Context context, Uri imageUri,
+                                            String uploadPreset, int chunkSize, CloudinaryUploadCallback callback) {
+        ImagePreprocessor.Result processed = preprocess(context, imageUri);
+        Uri uploadUri = processed != null ? processed.getUri() : imageUri;
+
+        long totalBytes = ContentUriRequestBody.queryContentLength(context.getContentResolver(), uploadUri);
+        if (totalBytes <= 0) {
+            // Content-Range needs the total size, fall back to a single request
+            Log.w(TAG, "Image size unknown, using single request upload");
+            return runSingleUpload(handle, context, imageUri, uploadPreset, callback);
+        }
+
+        UploadDedupIndex dedupIndex = new UploadDedupIndex(context);
+        String contentHash = UploadDedupIndex.sha256(context.getContentResolver(), uploadUri);
+        if (deliverExisting(dedupIndex, contentHash, processed, callback)) {
+            return true;
+        }
+
+        // Keyed by content when possible, so the same photo resumes under any URI
+        ChunkedUploadStore store = new ChunkedUploadStore(context);
+        ChunkedUploadStore.Session session = store.findOrCreate(
+                contentHash != null ? contentHash : uploadUri.toString(), totalBytes);
+
+        String mimeType = processed != null ? processed.getMimeType()
+                : context.getContentResolver().getType(imageUri);
+        MediaType mediaType = MediaType.parse(mimeType != null ? mimeType : "image/*");
+        String extension = MimeTypeMap.getSingleton().getExtensionFromMimeType(mimeType);
+        if (extension == null) {
+            extension = "jpg";
+        }
+
+        InputStream inputStream = null;
+        try {
+            inputStream = context.getContentResolver().openInputStream(uploadUri);
+            if (inputStream == null) {
+                runOnMainThread(() -> callback.onError("Failed to process image file"));
+                return true;
+            }
+            skipFully(inputStream, session.getOffset());
+
+            UploadProgressTracker tracker =
+                    new UploadProgressTracker(totalBytes, session.getOffset(), callback::onProgress);
+            tracker.update(session.getOffset());
+
+            byte[] chunk = new byte[chunkSize];
+            while (session.getOffset() < totalBytes) {
+                long start = session.getOffset();
+                int length = (int) Math.min(chunkSize, totalBytes - start);
+                readFully(inputStream, chunk, length);
+                long end = start + length;
+
+                RequestBody requestBody = buildUploadBody("image." + extension,
+                        new CountingRequestBody(RequestBody.create(chunk, mediaType, 0, length), start, tracker),
+                        uploadPreset, contentHash);
 
                 Request request = new Request.Builder()
                         .url(UPLOAD_URL)
+                        .header("X-Unique-Upload-Id", session.getUploadId())
+                        .header("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + totalBytes)
                         .post(requestBody)
                         .build();
 
-                Log.d(TAG, "Starting upload to Cloudinary...");
-                Log.d(TAG, "File size: " + finalImageFile.length() + " bytes");
-                runOnMainThread(() -> callback.onProgress(10));
-
-                // Execute upload
-                final File tempFile = imageFile;
-                getClient().newCall(request).enqueue(new Callback() {
-                    @Override
-                    public void onFailure(@NonNull Call call, @NonNull IOException e) {
-                        Log.e(TAG, "Upload failed: " + e.getMessage());
-                        final String errorMsg = "Network error: " + e.getMessage();
-                        runOnMainThread(() -> callback.onError(errorMsg));
-                        cleanupTempFile(tempFile);
-                    }
-
-                    @Override
-                    public void onResponse(@NonNull Call call, @NonNull Response response) {
-                        try {
-                            runOnMainThread(() -> callback.onProgress(70));
-
-                            if (response.isSuccessful() && response.body() != null) {
-                                String responseData = response.body().string();
-                                Log.d(TAG, "Upload response: " + responseData);
-
-                                runOnMainThread(() -> callback.onProgress(90));
-
-                                // Parse JSON response
-                                JSONObject jsonObject = new JSONObject(responseData);
-                                String imageUrl = jsonObject.getString("secure_url");
-                                String publicId = jsonObject.getString("public_id");
-
-                                // Get additional metadata
-                                int width = jsonObject.optInt("width", 0);
-                                int height = jsonObject.optInt("height", 0);
-                                long bytes = jsonObject.optLong("bytes", 0);
-
-                                Log.d(TAG, "Upload successful!");
-                                Log.d(TAG, "Image URL: " + imageUrl);
-                                Log.d(TAG, "Public ID: " + publicId);
-                                Log.d(TAG, "Dimensions: " + width + "x" + height);
-                                Log.d(TAG, "Size: " + bytes + " bytes");
-
-                                runOnMainThread(() -> {
-                                    callback.onProgress(100);
-                                    callback.onSuccess(imageUrl, publicId);
-                                });
-                            } else {
-                                String errorBody = response.body() != null ? response.body().string() : "Unknown error";
-                                Log.e(TAG, "Upload failed with code: " + response.code());
-                                Log.e(TAG, "Error body: " + errorBody);
-
-                                final String errorMsg = parseErrorMessage(response.code(), errorBody);
-                                runOnMainThread(() -> callback.onError(errorMsg));
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error parsing response: " + e.getMessage());
-                            final String errorMsg = "Error processing response: " + e.getMessage();
-                            runOnMainThread(() -> callback.onError(errorMsg));
-                        } finally {
-                            response.close();
-                            cleanupTempFile(tempFile);
-                        }
-                    }
-                });
-
-            } catch (Exception e) {
-                Log.e(TAG, "Upload preparation failed: " + e.getMessage());
-                e.printStackTrace();
-                final String errorMsg = "Failed to prepare upload: " + e.getMessage();
-                final File finalFile = imageFile;
-                runOnMainThread(() -> callback.onError(errorMsg));
-                cleanupTempFile(finalFile);
+                String responseData = executeChunk(handle, request);
+                Log.d(TAG, "Chunk acknowledged: bytes " + start + "-" + (end - 1) + "/" + totalBytes);
+
+                if (end < totalBytes) {
+                    store.markAcknowledged(session, end);
+                    continue;
+                }
+
+                // The response to the last chunk describes the assembled image
+                store.remove(session);
+                ImagePreprocessor.release(processed);
+                JSONObject jsonObject = new JSONObject(responseData);
+                String imageUrl = jsonObject.getString("secure_url");
+                String publicId = jsonObject.getString("public_id");
+                if (contentHash != null) dedupIndex.record(contentHash, imageUrl, publicId);
+
+                Log.d(TAG, "Chunked upload successful!");
+                Log.d(TAG, "Image URL: " + imageUrl);
+                Log.d(TAG, "Public ID: " + publicId);
+
+                tracker.complete();
+                runOnMainThread(() -> callback.onSuccess(imageUrl, publicId));
+                return true;
+            }
+            return true;
+        } catch (UploadException e) {
+            Log.e(TAG, "Chunked upload failed: " + e.getMessage());
+            final String errorMsg = e.getMessage();
+            runOnMainThread(() -> callback.onError(errorMsg));
+            return true;
+        } catch (Exception e) {
+            // Acknowledged chunks stay recorded, the next attempt resumes after them
+            if (handle.isStopped()) {
+                Log.d(TAG, "Chunked upload stopped at byte " + session.getOffset());
+                return false;
+            }
+            Log.e(TAG, "Chunked upload interrupted at byte " + session.getOffset() + ": " + e.getMessage());
+            final String errorMsg = "Network error: " + e.getMessage();
+            runOnMainThread(() -> callback.onError(errorMsg));
+            return true;
+        } finally {
+            try {
+                if (inputStream != null) inputStream.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing stream: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Multipart form for an unsigned upload
+     * @param publicId Content hash used as the public id, so the same image always maps to one asset. May be null.
+     */
+    private static RequestBody buildUploadBody(String fileName, RequestBody filePart,
+                                               String uploadPreset, String publicId) {
+        MultipartBody.Builder builder = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("file", fileName, filePart)
+                .addFormDataPart("upload_preset", uploadPreset)
+                .addFormDataPart("folder", "XavierProject/reports")
+                .addFormDataPart("resource_type", "image");
+        if (publicId != null) {
+            builder.addFormDataPart("public_id", publicId);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Finish the upload without sending anything if this content was uploaded before
+     * @return true if an existing asset was delivered to the callback
+     */
+    private static boolean deliverExisting(UploadDedupIndex dedupIndex, String contentHash,
+                                           ImagePreprocessor.Result processed, CloudinaryUploadCallback callback) {
+        UploadDedupIndex.Entry existing = contentHash != null ? dedupIndex.find(contentHash) : null;
+        if (existing == null) {
+            return false;
+        }
+
+        Log.d(TAG, "Image already uploaded as " + existing.getPublicId() + ", reusing it");
+        ImagePreprocessor.release(processed);
+        new UploadProgressTracker(0, 0, callback::onProgress).complete();
+        runOnMainThread(() -> callback.onSuccess(existing.getUrl(), existing.getPublicId()));
+        return true;
+    }
+
+    /**
+     * Run the preprocessing stage with the configured options, or return null
+     * to upload the original image
+     */
+    static ImagePreprocessor.Result preprocess(Context context, Uri imageUri) {
+        ImagePreprocessor.Options options = preprocessOptions;
+        if (options == null) {
+            return null;
+        }
+        return ImagePreprocessor.process(context, imageUri, options);
+    }
+
+    /**
+     * Send one chunk, retrying transient network failures with a short backoff
+     * @return Response body of the acknowledged chunk
+     */
+    private static String executeChunk(UploadManager.Handle handle, Request request) throws IOException, UploadException {
+        IOException lastError = null;
+        for (int attempt = 1; attempt <= CHUNK_MAX_ATTEMPTS; attempt++) {
+            Call call = getClient().newCall(request);
+            if (!handle.track(call)) {
+                throw new IOException("Upload stopped");
+            }
+            try (Response response = call.execute()) {
+                String body = response.body() != null ? response.body().string() : "";
+                if (response.isSuccessful()) {
+                    return body;
+                }
+                if (response.code() < 500) {
+                    // Client errors won't succeed on retry
+                    throw new UploadException(parseErrorMessage(response.code(), body));
+                }
+                lastError = new IOException("Server error " + response.code());
+            } catch (IOException e) {
+                if (handle.isStopped()) throw e;
+                lastError = e;
+            }
+
+            Log.w(TAG, "Chunk attempt " + attempt + " failed: " + lastError.getMessage());
+            if (attempt < CHUNK_MAX_ATTEMPTS) {
+                try {
+                    Thread.sleep(CHUNK_RETRY_DELAY_MS * attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Upload interrupted");
+                }
+            }
+        }
+        throw lastError;
+    }
+
+    private static void skipFully(InputStream inputStream, long bytes) throws IOException {
+        long remaining = bytes;
+        byte[] discard = null;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                // Some providers don't support skip(), read and drop instead
+                if (discard == null) discard = new byte[8192];
+                int read = inputStream.read(discard, 0, (int) Math.min(discard.length, remaining));
+                if (read == -1) throw new IOException("Image is shorter than the recorded upload");
+                skipped = read;
             }
-        }).start();
+            remaining -= skipped;
+        }
+    }
+
+    private static void readFully(InputStream inputStream, byte[] buffer, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = inputStream.read(buffer, total, length - total);
+            if (read == -1) throw new IOException("Image ended before the expected size");
+            total += read;
+        }
+    }
+
+    /**
+     * Non-retryable upload failure with a user facing message
+     */
+    private static class UploadException extends Exception {
+        UploadException(String message) {
+            super(message);
+        }
     }
 
     /**
@@ -220,67 +525,6 @@ public class CloudinaryHelper {
         }
     }
 
-    /**
-     * Convert URI to File with improved error handling
-     */
-    private static File getFileFromUri(Context context, Uri uri) {
-        InputStream inputStream = null;
-        FileOutputStream outputStream = null;
-
-        try {
-            inputStream = context.getContentResolver().openInputStream(uri);
-            if (inputStream == null) {
-                Log.e(TAG, "Failed to open input stream from URI");
-                return null;
-            }
-
-            // Create temp file with timestamp
-            String fileName = "temp_upload_" + System.currentTimeMillis() + ".jpg";
-            File tempFile = new File(context.getCacheDir(), fileName);
-            outputStream = new FileOutputStream(tempFile);
-
-            byte[] buffer = new byte[8192]; // Increased buffer size
-            int bytesRead;
-            long totalBytes = 0;
-
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
-                totalBytes += bytesRead;
-            }
-
-            outputStream.flush();
-
-            Log.d(TAG, "Temp file created: " + tempFile.getAbsolutePath());
-            Log.d(TAG, "File size: " + totalBytes + " bytes");
-
-            return tempFile;
-        } catch (Exception e) {
-            Log.e(TAG, "Error creating file from URI: " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        } finally {
-            try {
-                if (inputStream != null) inputStream.close();
-                if (outputStream != null) outputStream.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Error closing streams: " + e.getMessage());
-            }
-        }
-    }
-
-    /**
-     * Clean up temporary file
-     */
-    private static void cleanupTempFile(File file) {
-        if (file != null && file.exists()) {
-            if (file.delete()) {
-                Log.d(TAG, "Temp file deleted: " + file.getName());
-            } else {
-                Log.w(TAG, "Failed to delete temp file: " + file.getName());
-            }
-        }
-    }
-
     /**
      * Run callback on main thread
      */
@@ -344,7 +588,8 @@ public class CloudinaryHelper {
      */
     public interface CloudinaryUploadCallback {
         void onStart();
-        void onProgress(int progress);
+        // Bytes sent, throughput and ETA, at most every 100ms
+        void onProgress(UploadProgress progress);
         void onSuccess(String imageUrl, String publicId);
         void onError(String error);
     }
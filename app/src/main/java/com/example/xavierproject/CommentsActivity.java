@@ -238,6 +238,8 @@ public class CommentsActivity extends AppCompatActivity {
                 for (DataSnapshot commentSnapshot : snapshot.getChildren()) {
                     Comment comment = commentSnapshot.getValue(Comment.class);
                     if (comment != null) {
+                        // Rows are matched by id between updates
+                        if (comment.getCommentId() == null) comment.setCommentId(commentSnapshot.getKey());
                         comments.add(comment);
                     }
                 }
@@ -21,26 +21,47 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.CommentViewHolder> {
 
     private Context context;
-    private List<Comment> comments;
+    private final KeyedListDiffer<Comment> comments;
     private FirebaseUser currentUser;
     private DatabaseReference commentsRef;
     private String postId;
 
     public CommentsAdapter(Context context, String postId) {
         this.context = context;
-        this.comments = new ArrayList<>();
         this.currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        this.comments = new KeyedListDiffer<>(this, Comment::getCommentId, this::sameContents);
         this.postId = postId;
         this.commentsRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference("comments").child(postId);
     }
 
+    /**
+     * Show a new list, rebinding only the comments that changed
+     */
     public void setComments(List<Comment> comments) {
-        this.comments = comments;
-        notifyDataSetChanged();
+        this.comments.submit(comments);
+    }
+
+    /**
+     * Everything a row shows, including whether the current user liked it
+     */
+    private boolean sameContents(Comment a, Comment b) {
+        String uid = currentUser != null ? currentUser.getUid() : null;
+        return Objects.equals(a.getUserId(), b.getUserId())
+                && Objects.equals(a.getUserName(), b.getUserName())
+                && Objects.equals(a.getContent(), b.getContent())
+                && a.getTimestamp() == b.getTimestamp()
+                && a.getLikes() == b.getLikes()
+                && a.isEdited() == b.isEdited()
+                && likedBy(a, uid) == likedBy(b, uid);
+    }
+
+    private static boolean likedBy(Comment comment, String uid) {
+        return comment.getLikedBy() != null && comment.getLikedBy().containsKey(uid);
     }
 
     @NonNull
@@ -89,7 +110,7 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
         holder.likeButton.setOnClickListener(v -> handleLike(comment, holder));
 
         // More options button
-        holder.moreButton.setOnClickListener(v -> showMoreOptions(comment, position));
+        holder.moreButton.setOnClickListener(v -> showMoreOptions(comment));
 
         // Long press to like
         holder.cardView.setOnLongClickListener(v -> {
@@ -130,7 +151,7 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
         notifyItemChanged(holder.getAdapterPosition());
     }
 
-    private void showMoreOptions(Comment comment, int position) {
+    private void showMoreOptions(Comment comment) {
         List<String> optionsList = new ArrayList<>();
 
         if (currentUser != null && comment.getUserId().equals(currentUser.getUid())) {
@@ -148,9 +169,9 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
                 .setItems(options, (dialog, which) -> {
                     String selected = options[which];
                     if (selected.equals("Edit Comment")) {
-                        editComment(comment, position);
+                        editComment(comment);
                     } else if (selected.equals("Delete Comment")) {
-                        deleteComment(comment, position);
+                        deleteComment(comment);
                     } else if (selected.equals("Report Comment")) {
                         Toast.makeText(context, "Comment reported", Toast.LENGTH_SHORT).show();
                     }
@@ -158,7 +179,7 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
                 .show();
     }
 
-    private void editComment(Comment comment, int position) {
+    private void editComment(Comment comment) {
         AlertDialog.Builder builder = new AlertDialog.Builder(context);
         builder.setTitle("Edit Comment");
 
@@ -179,7 +200,10 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
                 comment.setContent(newContent);
                 comment.setEdited(true);
                 comment.setEditedTimestamp(System.currentTimeMillis());
-                notifyItemChanged(position);
+                int position = comments.indexOf(comment);
+                if (position >= 0) {
+                    notifyItemChanged(position);
+                }
 
                 Toast.makeText(context, "Comment updated", Toast.LENGTH_SHORT).show();
             }
@@ -188,19 +212,17 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
         builder.show();
     }
 
-    private void deleteComment(Comment comment, int position) {
+    private void deleteComment(Comment comment) {
         new AlertDialog.Builder(context)
                 .setTitle("Delete Comment")
                 .setMessage("Are you sure you want to delete this comment?")
                 .setPositiveButton("Delete", (dialog, which) -> {
                     commentsRef.child(comment.getCommentId()).removeValue()
                             .addOnSuccessListener(aVoid -> {
-                                comments.remove(position);
-                                notifyItemRemoved(position);
                                 Toast.makeText(context, "Comment deleted", Toast.LENGTH_SHORT).show();
 
-                                // Update comment count in post
-                                updateCommentCount();
+                                // Update comment count in post once the row is gone
+                                comments.remove(comment, this::updateCommentCount);
                             })
                             .addOnFailureListener(e -> {
                                 Toast.makeText(context, "Failed to delete comment", Toast.LENGTH_SHORT).show();
@@ -3,7 +3,6 @@ package com.example.xavierproject;
 import android.os.Bundle;
 import android.content.Intent;
 import android.net.Uri;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
@@ -12,17 +11,9 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import com.bumptech.glide.Glide;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import android.location.Address;
-import android.location.Geocoder;
-import java.io.IOException;
-import java.util.List;
-import java.util.Locale;
 
 public class ComplaintDetailActivity extends AppCompatActivity {
 
-    private static final String TAG = "ComplaintDetail";
     private TextView titleTextView, categoryTextView, descriptionTextView, locationTextView;
     private ImageView complaintImageView;
     private Button btnPending, btnAcknowledged, btnOngoing, btnResolved, btnViewOnMap;
@@ -32,7 +23,6 @@ public class ComplaintDetailActivity extends AppCompatActivity {
     private String currentStatus;
     private double latitude;
     private double longitude;
-    private DatabaseReference reportRef;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -103,67 +93,26 @@ public class ComplaintDetailActivity extends AppCompatActivity {
             complaintImageView.setImageResource(R.drawable.ic_launcher_background);
         }
 
-        // Initialize Firebase reference
-        reportRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference("reports").child(reportId);
-
         // Highlight current status
         updateStatusButtons(currentStatus);
     }
 
     private void getAddressFromCoordinates(double latitude, double longitude) {
+        AddressCache addressCache = AddressCache.getInstance(this);
+        String cached = addressCache.peek(latitude, longitude);
+        if (cached != null) {
+            locationTextView.setText(cached);
+            return;
+        }
+
         // Show loading state
         locationTextView.setText("Loading location...");
 
-        // Run geocoding in background thread
-        new Thread(() -> {
-            try {
-                Geocoder geocoder = new Geocoder(this, Locale.getDefault());
-                List<Address> addresses = geocoder.getFromLocation(latitude, longitude, 1);
-
-                if (addresses != null && !addresses.isEmpty()) {
-                    Address address = addresses.get(0);
-
-                    // Build location string
-                    StringBuilder locationBuilder = new StringBuilder();
-
-                    // Add address line
-                    if (address.getSubLocality() != null) {
-                        locationBuilder.append(address.getSubLocality()).append(", ");
-                    } else if (address.getLocality() != null) {
-                        locationBuilder.append(address.getLocality()).append(", ");
-                    }
-
-                    // Add city
-                    if (address.getLocality() != null && address.getSubLocality() != null) {
-                        locationBuilder.append(address.getLocality()).append(", ");
-                    }
-
-                    // Add state
-                    if (address.getAdminArea() != null) {
-                        locationBuilder.append(address.getAdminArea());
-                    }
-
-                    String locationText = locationBuilder.toString();
-                    if (locationText.isEmpty()) {
-                        locationText = latitude + ", " + longitude;
-                    }
-
-                    final String finalLocation = locationText;
-
-                    // Update UI on main thread
-                    runOnUiThread(() -> locationTextView.setText(finalLocation));
-
-                } else {
-                    // If geocoding fails, show coordinates
-                    runOnUiThread(() -> locationTextView.setText(latitude + ", " + longitude));
-                }
-
-            } catch (IOException e) {
-                Log.e(TAG, "Geocoding error: " + e.getMessage());
-                // Show coordinates if geocoding fails
-                runOnUiThread(() -> locationTextView.setText(latitude + ", " + longitude));
-            }
-        }).start();
+        addressCache.lookup(latitude, longitude, address -> {
+            if (isFinishing() || isDestroyed()) return;
+            // If geocoding fails, show coordinates
+            locationTextView.setText(address != null ? address : latitude + ", " + longitude);
+        });
     }
 
     private void setupStatusButtons() {
@@ -198,8 +147,8 @@ public class ComplaintDetailActivity extends AppCompatActivity {
     }
 
     private void updateStatus(String newStatus) {
-        // Update status in Firebase
-        reportRef.child("status").setValue(newStatus)
+        // Update status in Firebase, together with the report's geohash index entry
+        ReportGeoIndex.updateStatus(reportId, newStatus)
                 .addOnSuccessListener(aVoid -> {
                     currentStatus = newStatus;
                     updateStatusButtons(newStatus);
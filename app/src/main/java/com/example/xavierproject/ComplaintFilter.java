@@ -0,0 +1,144 @@
+package com.example.xavierproject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the complaint queue is filtered and sorted by. Every combination maps
+ * to one ordered child of a city shard entry and a range of values on it, so
+ * the database only ever returns matching complaints. Immutable.
+ */
+public class ComplaintFilter {
+
+    public static final String[] STATUSES = {"pending", "acknowledged", "ongoing", "resolved"};
+
+    // Sorts after anything a composite key can contain
+    private static final String PREFIX_END = "\uf8ff";
+
+    private final String status;
+    private final String category;
+    private final long since;
+    private final boolean newestFirst;
+
+    /**
+     * @param status Only this status, or null for any
+     * @param category Only this category, or null for any
+     * @param since Only complaints made at or after this time, or 0 for any time
+     */
+    public ComplaintFilter(String status, String category, long since, boolean newestFirst) {
+        this.status = status;
+        this.category = category;
+        this.since = since;
+        this.newestFirst = newestFirst;
+    }
+
+    /**
+     * Every complaint, newest first
+     */
+    public static ComplaintFilter all() {
+        return new ComplaintFilter(null, null, 0, true);
+    }
+
+    public ComplaintFilter withStatus(String status) {
+        return new ComplaintFilter(status, category, since, newestFirst);
+    }
+
+    public ComplaintFilter withCategory(String category) {
+        return new ComplaintFilter(status, category, since, newestFirst);
+    }
+
+    public ComplaintFilter withSince(long since) {
+        return new ComplaintFilter(status, category, since, newestFirst);
+    }
+
+    public ComplaintFilter withNewestFirst(boolean newestFirst) {
+        return new ComplaintFilter(status, category, since, newestFirst);
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public boolean isNewestFirst() {
+        return newestFirst;
+    }
+
+    /**
+     * Whether anything is filtered out, sort order aside
+     */
+    public boolean isFiltered() {
+        return status != null || category != null || since > 0;
+    }
+
+    /**
+     * Child of a shard entry the queue is ordered by
+     */
+    public String orderField() {
+        if (status != null && category != null) return ReportCityShard.STATUS_CATEGORY_TIMESTAMP;
+        if (status != null) return ReportCityShard.STATUS_TIMESTAMP;
+        if (category != null) return ReportCityShard.CATEGORY_TIMESTAMP;
+        return "timestamp";
+    }
+
+    /**
+     * Lowest value of orderField() that matches, a String or a Double, or null if unbounded
+     */
+    public Object lowerBound() {
+        String prefix = prefix();
+        if (prefix == null) {
+            return since > 0 ? (Object) (double) since : null;
+        }
+        return prefix + ReportCityShard.timeKey(since);
+    }
+
+    /**
+     * Highest value of orderField() that matches, or null if unbounded
+     */
+    public Object upperBound() {
+        String prefix = prefix();
+        return prefix != null ? prefix + PREFIX_END : null;
+    }
+
+    /**
+     * Short summary for the screen, e.g. "Pending, Drainage, Newest first"
+     */
+    public String describe(String sinceLabel) {
+        List<String> parts = new ArrayList<>();
+        parts.add(status != null ? capitalize(status) : "All statuses");
+        parts.add(category != null ? category : "All categories");
+        if (since > 0 && sinceLabel != null) {
+            parts.add(sinceLabel);
+        }
+        parts.add(newestFirst ? "Newest first" : "Oldest first");
+        StringBuilder summary = new StringBuilder();
+        for (String part : parts) {
+            if (summary.length() > 0) summary.append(", ");
+            summary.append(part);
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Key prefix shared by every match, or null if ordered by plain timestamp
+     */
+    private String prefix() {
+        if (status != null && category != null) {
+            return ReportCityShard.statusPart(status) + "_" + ReportCityShard.categoryPart(category) + "_";
+        }
+        if (status != null) return ReportCityShard.statusPart(status) + "_";
+        if (category != null) return ReportCityShard.categoryPart(category) + "_";
+        return null;
+    }
+
+    private static String capitalize(String value) {
+        return value.isEmpty() ? value : value.substring(0, 1).toUpperCase() + value.substring(1);
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.xavierproject;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads a complaint queue one page at a time, in the order and range a
+ * ComplaintFilter sets, using the (value, key) of the last complaint loaded
+ * as the cursor for the next page. Each page is one live listener whose first
+ * callback is the page load, so nothing is downloaded twice. A page listens
+ * to a window of pageSize complaints after its cursor; if complaints arriving
+ * inside it push its far end out of the window, the page is pinned to the
+ * range up to where the next page starts, so no complaint falls between two
+ * pages. The first page stays open-ended, so new complaints show up.
+ */
+public class ComplaintPager {
+
+    private static final String TAG = "ComplaintPager";
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    public interface Listener {
+        /**
+         * All loaded complaints, in the filter's order. Called on the main thread.
+         */
+        void onComplaintsChanged(List<Complaint> complaints, boolean hasMore);
+        void onError(String error);
+    }
+
+    private final DatabaseReference queueRef;
+    private final int pageSize;
+    private final Listener listener;
+    private final List<Page> pages = new ArrayList<>();
+    private ComplaintFilter filter;
+    private boolean loading;
+    private boolean hasMore = true;
+    private boolean detached;
+
+    public ComplaintPager(DatabaseReference queueRef, ComplaintFilter filter, int pageSize, Listener listener) {
+        this.queueRef = queueRef;
+        this.filter = filter;
+        this.pageSize = pageSize;
+        this.listener = listener;
+    }
+
+    public ComplaintFilter getFilter() {
+        return filter;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Load the next page, if there is one and none is loading
+     */
+    public void loadNextPage() {
+        if (loading || !hasMore || detached) return;
+        loading = true;
+        Page previous = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+        Page page;
+        if (previous != null) {
+            // The new page starts right after where the last one ends now
+            previous.endValue = previous.farValue;
+            previous.endKey = previous.farKey;
+            page = new Page(previous.endValue, previous.endKey);
+        } else {
+            page = new Page(null, null);
+        }
+        pages.add(page);
+        page.attach();
+    }
+
+    /**
+     * Switch to another filter, starting again from its first page
+     */
+    public void setFilter(ComplaintFilter filter) {
+        this.filter = filter;
+        reload();
+    }
+
+    /**
+     * Drop every page and start again from the first
+     */
+    public void reload() {
+        detachAll();
+        detached = false;
+        hasMore = true;
+        loadNextPage();
+    }
+
+    public void detachAll() {
+        detached = true;
+        loading = false;
+        for (Page page : pages) {
+            page.detach();
+        }
+        pages.clear();
+    }
+
+    private void notifyChanged() {
+        // A page's window can reach into the next one after deletions, show each complaint once
+        List<Complaint> all = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Page page : pages) {
+            if (page.items == null) continue;
+            for (Complaint complaint : page.items) {
+                if (seen.add(complaint.getReportId())) {
+                    all.add(complaint);
+                }
+            }
+        }
+        listener.onComplaintsChanged(all, hasMore);
+    }
+
+    /**
+     * Query for a page: a window of pageSize complaints after its cursor, or
+     * once pinned, everything from its cursor to the far end it first loaded
+     */
+    private Query pageQuery(Page page) {
+        Object lower = filter.lowerBound();
+        Object upper = filter.upperBound();
+        Query query = queueRef.orderByChild(filter.orderField());
+        if (filter.isNewestFirst()) {
+            // Pages run down from the top, the far end is the low one
+            if (page.pinned) {
+                query = startAt(query, page.endValue, page.endKey);
+            } else if (lower != null) {
+                query = startAt(query, lower, null);
+            }
+            if (page.afterKey != null) {
+                query = endBefore(query, page.afterValue, page.afterKey);
+            } else if (upper != null) {
+                query = endAt(query, upper, null);
+            }
+            return page.pinned ? query : query.limitToLast(pageSize);
+        }
+        if (page.afterKey != null) {
+            query = startAfter(query, page.afterValue, page.afterKey);
+        } else if (lower != null) {
+            query = startAt(query, lower, null);
+        }
+        if (page.pinned) {
+            query = endAt(query, page.endValue, page.endKey);
+        } else if (upper != null) {
+            query = endAt(query, upper, null);
+        }
+        return page.pinned ? query : query.limitToFirst(pageSize);
+    }
+
+    /**
+     * Sort value of a complaint, a String or a Double to match the query
+     */
+    private static Object valueOf(DataSnapshot child, String field) {
+        Object value = child.child(field).getValue();
+        return value instanceof Number ? (Object) ((Number) value).doubleValue() : value;
+    }
+
+    /**
+     * Order of two (value, key) cursors as the database sorts them: missing
+     * values first, then numbers, then strings, ties broken by key
+     */
+    private static int compare(Object value1, String key1, Object value2, String key2) {
+        int rank1 = value1 == null ? 0 : value1 instanceof Double ? 1 : 2;
+        int rank2 = value2 == null ? 0 : value2 instanceof Double ? 1 : 2;
+        int result = Integer.compare(rank1, rank2);
+        if (result == 0 && rank1 == 1) result = Double.compare((Double) value1, (Double) value2);
+        if (result == 0 && rank1 == 2) result = ((String) value1).compareTo((String) value2);
+        return result != 0 ? result : key1.compareTo(key2);
+    }
+
+    private static Query startAt(Query query, Object value, String key) {
+        if (value instanceof Double) {
+            return key != null ? query.startAt((Double) value, key) : query.startAt((Double) value);
+        }
+        return key != null ? query.startAt((String) value, key) : query.startAt((String) value);
+    }
+
+    private static Query startAfter(Query query, Object value, String key) {
+        if (value instanceof Double) return query.startAfter((Double) value, key);
+        return query.startAfter((String) value, key);
+    }
+
+    private static Query endAt(Query query, Object value, String key) {
+        if (value instanceof Double) {
+            return key != null ? query.endAt((Double) value, key) : query.endAt((Double) value);
+        }
+        return key != null ? query.endAt((String) value, key) : query.endAt((String) value);
+    }
+
+    private static Query endBefore(Query query, Object value, String key) {
+        if (value instanceof Double) return query.endBefore((Double) value, key);
+        return query.endBefore((String) value, key);
+    }
+
+    /**
+     * One page and the live listener on its window or range
+     */
+    private class Page {
+        // Cursor of the page before, null for the first page
+        final Object afterValue;
+        final String afterKey;
+        // Far end of the page when the next one was loaded after it, null while it is the last
+        Object endValue;
+        String endKey;
+        // Far end of the page now, null while it is empty
+        Object farValue;
+        String farKey;
+        boolean loaded;
+        boolean pinned;
+        final ReportSnapshotParser parser = new ReportSnapshotParser();
+        Query query;
+        ValueEventListener valueListener;
+        // In the filter's order
+        List<Complaint> items;
+
+        Page(Object afterValue, String afterKey) {
+            this.afterValue = afterValue;
+            this.afterKey = afterKey;
+        }
+
+        void setItems(List<Complaint> ascending) {
+            List<Complaint> ordered = new ArrayList<>(ascending);
+            if (filter.isNewestFirst()) {
+                Collections.reverse(ordered);
+            }
+            items = ordered;
+        }
+
+        void attach() {
+            query = pageQuery(this);
+            valueListener = new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    if (valueListener != this) return;
+                    onPageData(snapshot);
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    if (valueListener != this) return;
+                    Log.e(TAG, "Page listener failed: " + error.getMessage());
+                    if (!loaded) {
+                        loading = false;
+                        detach();
+                        pages.remove(Page.this);
+                    }
+                    listener.onError(error.getMessage());
+                }
+            };
+            query.addValueEventListener(valueListener);
+        }
+
+        private void onPageData(DataSnapshot snapshot) {
+            String field = filter.orderField();
+            boolean newestFirst = filter.isNewestFirst();
+            long count = snapshot.getChildrenCount();
+            DataSnapshot far = null;
+            for (DataSnapshot child : snapshot.getChildren()) {
+                // Children come in ascending order
+                if (far == null || !newestFirst) far = child;
+            }
+            Object value = far != null ? valueOf(far, field) : null;
+
+            if (!loaded) {
+                loaded = true;
+                loading = false;
+                hasMore = count >= pageSize;
+                if (far == null && pages.size() > 1) {
+                    // Nothing past the page before, it stays the last one
+                    detach();
+                    pages.remove(this);
+                    Page previous = pages.get(pages.size() - 1);
+                    if (!previous.pinned) {
+                        previous.endValue = null;
+                        previous.endKey = null;
+                    }
+                    notifyChanged();
+                    return;
+                }
+                Log.d(TAG, "Loaded page " + pages.size() + " by " + field + ": " + count + " complaints");
+            } else if (!pinned && endKey != null && far != null && count >= pageSize) {
+                int moved = compare(value, far.getKey(), endValue, endKey);
+                if (newestFirst ? moved > 0 : moved < 0) {
+                    // Complaints arriving inside the window pushed its far end toward the
+                    // next page, so listen to everything up to where that page starts
+                    Log.d(TAG, "Pinning page " + (pages.indexOf(this) + 1) + " to its range");
+                    detach();
+                    pinned = true;
+                    attach();
+                    return;
+                }
+            }
+            if (far != null) {
+                farValue = value;
+                farKey = far.getKey();
+            }
+            if (!pinned && count >= pageSize && pages.get(pages.size() - 1) == this) {
+                // The last page filled up since it loaded, there may be more past it
+                hasMore = true;
+            }
+
+            parser.parseLatest(snapshot, ReportSnapshotParser::parseComplaint, complaints -> {
+                setItems(complaints);
+                notifyChanged();
+            });
+        }
+
+        void detach() {
+            parser.cancel();
+            if (valueListener != null) {
+                query.removeEventListener(valueListener);
+                valueListener = null;
+            }
+        }
+    }
+}
@@ -3,24 +3,21 @@ package com.example.xavierproject;
 import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
+import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 public class ComplaintsActivity extends AppCompatActivity {
 
@@ -29,11 +26,22 @@ public class ComplaintsActivity extends AppCompatActivity {
     private ComplaintsAdapter adapter;
     private ProgressBar progressBar;
     private TextView emptyTextView;
+    private TextView filterSummaryTextView;
     private String cityName;
+    private String cityKey;
 
-    private DatabaseReference reportsRef;
-    private DatabaseReference usersRef;
-    private ValueEventListener reportsListener;
+    private UserProfileCache profileCache;
+    private ComplaintPager pager;
+
+    private ComplaintFilter filter = ComplaintFilter.all();
+    private int sinceOption;
+    private ActionMode selectionMode;
+
+    // Load the next page once the user is this many rows from the end
+    private static final int PREFETCH_ROWS = 15;
+
+    private static final String[] SINCE_OPTIONS = {"Any time", "Last 24 hours", "Last 7 days", "Last 30 days"};
+    private static final int[] SINCE_DAYS = {0, 1, 7, 30};
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -45,12 +53,17 @@ public class ComplaintsActivity extends AppCompatActivity {
             cityName = "Mumbai";
         }
 
+        // The theme has no action bar, the toolbar carries the sort and filter menu
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+
         if (getSupportActionBar() != null) {
             getSupportActionBar().setTitle(cityName + " - Complaints");
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
             getSupportActionBar().setDisplayShowHomeEnabled(true);
         }
 
+        profileCache = UserProfileCache.getInstance(this);
         initializeViews();
         loadComplaintsFromFirebase();
     }
@@ -59,6 +72,7 @@ public class ComplaintsActivity extends AppCompatActivity {
         complaintsRecyclerView = findViewById(R.id.complaintsRecyclerView);
         progressBar = findViewById(R.id.progressBar);
         emptyTextView = findViewById(R.id.emptyTextView);
+        filterSummaryTextView = findViewById(R.id.filterSummaryTextView);
 
         complaintsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         adapter = new ComplaintsAdapter(this, complaint -> {
@@ -66,10 +80,45 @@ public class ComplaintsActivity extends AppCompatActivity {
             fetchUserEmailAndOpenDetail(complaint);
         });
         complaintsRecyclerView.setAdapter(adapter);
+
+        // Long-pressing a complaint starts selecting for bulk status changes
+        adapter.setSelectionListener(count -> {
+            if (count == 0) {
+                if (selectionMode != null) selectionMode.finish();
+                return;
+            }
+            if (selectionMode == null) {
+                selectionMode = startSupportActionMode(selectionCallback);
+            }
+            if (selectionMode != null) {
+                selectionMode.setTitle(count + " selected");
+            }
+        });
+
+        // Resolve reporters for the rows on screen and addresses a screen ahead, and fetch the next page near the end
+        complaintsRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (layoutManager == null) return;
+                int first = layoutManager.findFirstVisibleItemPosition();
+                int last = layoutManager.findLastVisibleItemPosition();
+                if (first == RecyclerView.NO_POSITION) return;
+                int screen = last - first + 1;
+                adapter.prefetchProfiles(first, last + 1 + screen);
+                adapter.prefetchAddresses(last + 1, last + 1 + screen);
+
+                if (pager != null && last >= adapter.getItemCount() - PREFETCH_ROWS
+                        && pager.hasMore() && !pager.isLoading()) {
+                    pager.loadNextPage();
+                }
+            }
+        });
     }
 
     /**
-     * âœ… NEW METHOD - Fetches user email from users table before opening detail
+     * Opens the detail screen with the reporter's email. It is usually
+     * cached already, since profiles are prefetched for the rows on screen.
      */
     private void fetchUserEmailAndOpenDetail(Complaint complaint) {
         String userId = complaint.getUserId();
@@ -80,35 +129,20 @@ public class ComplaintsActivity extends AppCompatActivity {
             return;
         }
 
-        // Show loading
-        progressBar.setVisibility(View.VISIBLE);
-
-        // Fetch email from users table
-        usersRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference("users").child(userId);
-        usersRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                progressBar.setVisibility(View.GONE);
-
-                String userEmail = null;
-                if (snapshot.exists()) {
-                    userEmail = snapshot.child("email").getValue(String.class);
-                    Log.d(TAG, "Fetched email for user: " + userEmail);
-                } else {
-                    Log.w(TAG, "User not found in database: " + userId);
-                }
-
-                openDetailActivity(complaint, userEmail);
-            }
+        if (profileCache.isCached(userId)) {
+            openDetailActivity(complaint, profileCache.peekEmail(userId));
+            return;
+        }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                progressBar.setVisibility(View.GONE);
-                Log.e(TAG, "Failed to fetch user email: " + error.getMessage());
+        // Not fetched yet, wait for it
+        progressBar.setVisibility(View.VISIBLE);
+        profileCache.lookup(userId, profile -> {
+            progressBar.setVisibility(View.GONE);
+            if (isFinishing() || isDestroyed()) return;
 
-                // Open detail anyway, just without email
-                openDetailActivity(complaint, null);
-            }
+            String userEmail = profile != null ? profile.getEmail() : null;
+            Log.d(TAG, "Fetched email for user: " + userEmail);
+            openDetailActivity(complaint, userEmail);
         });
     }
 
@@ -130,111 +164,238 @@ public class ComplaintsActivity extends AppCompatActivity {
         startActivity(intent);
     }
 
-    private void loadComplaintsFromFirebase() {
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_complaints, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        int id = item.getItemId();
+
+        if (id == R.id.action_sort) {
+            showSortDialog();
+            return true;
+        } else if (id == R.id.action_filter_status) {
+            showStatusFilterDialog();
+            return true;
+        } else if (id == R.id.action_filter_category) {
+            showCategoryFilterDialog();
+            return true;
+        } else if (id == R.id.action_filter_date) {
+            showDateFilterDialog();
+            return true;
+        } else if (id == R.id.action_clear_filters) {
+            sinceOption = 0;
+            applyFilter(ComplaintFilter.all().withNewestFirst(filter.isNewestFirst()));
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void showSortDialog() {
+        String[] sortOptions = {"Newest First", "Oldest First"};
+
+        new AlertDialog.Builder(this)
+                .setTitle("Sort Complaints")
+                .setSingleChoiceItems(sortOptions, filter.isNewestFirst() ? 0 : 1, (dialog, which) -> {
+                    applyFilter(filter.withNewestFirst(which == 0));
+                    dialog.dismiss();
+                })
+                .show();
+    }
+
+    private void showStatusFilterDialog() {
+        String[] options = new String[ComplaintFilter.STATUSES.length + 1];
+        options[0] = "All Statuses";
+        int currentSelection = 0;
+        for (int i = 0; i < ComplaintFilter.STATUSES.length; i++) {
+            String status = ComplaintFilter.STATUSES[i];
+            options[i + 1] = status.substring(0, 1).toUpperCase() + status.substring(1);
+            if (status.equals(filter.getStatus())) currentSelection = i + 1;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle("Filter by Status")
+                .setSingleChoiceItems(options, currentSelection, (dialog, which) -> {
+                    applyFilter(filter.withStatus(which == 0 ? null : ComplaintFilter.STATUSES[which - 1]));
+                    dialog.dismiss();
+                })
+                .show();
+    }
+
+    private void showCategoryFilterDialog() {
+        String[] options = new String[ReportFragment.CATEGORIES.length + 1];
+        options[0] = "All Categories";
+        int currentSelection = 0;
+        for (int i = 0; i < ReportFragment.CATEGORIES.length; i++) {
+            options[i + 1] = ReportFragment.CATEGORIES[i];
+            if (ReportFragment.CATEGORIES[i].equals(filter.getCategory())) currentSelection = i + 1;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle("Filter by Category")
+                .setSingleChoiceItems(options, currentSelection, (dialog, which) -> {
+                    applyFilter(filter.withCategory(which == 0 ? null : ReportFragment.CATEGORIES[which - 1]));
+                    dialog.dismiss();
+                })
+                .show();
+    }
+
+    private void showDateFilterDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle("Filter by Date")
+                .setSingleChoiceItems(SINCE_OPTIONS, sinceOption, (dialog, which) -> {
+                    sinceOption = which;
+                    long since = SINCE_DAYS[which] > 0
+                            ? System.currentTimeMillis() - SINCE_DAYS[which] * 24 * 60 * 60 * 1000L : 0;
+                    applyFilter(filter.withSince(since));
+                    dialog.dismiss();
+                })
+                .show();
+    }
+
+    /**
+     * Reload the queue for a new filter, as one range query per page
+     */
+    private void applyFilter(ComplaintFilter newFilter) {
+        if (selectionMode != null) selectionMode.finish();
+        filter = newFilter;
+        updateFilterSummary();
         progressBar.setVisibility(View.VISIBLE);
-        complaintsRecyclerView.setVisibility(View.GONE);
         emptyTextView.setVisibility(View.GONE);
+        complaintsRecyclerView.scrollToPosition(0);
+        pager.setFilter(filter);
+    }
 
-        // Initialize Firebase Database reference
-        reportsRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference("reports");
+    private void updateFilterSummary() {
+        filterSummaryTextView.setText(filter.describe(SINCE_OPTIONS[sinceOption]));
+    }
 
-        // Create listener for real-time updates
-        reportsListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                List<Complaint> complaints = new ArrayList<>();
-
-                for (DataSnapshot reportSnapshot : dataSnapshot.getChildren()) {
-                    try {
-
-                        // Get the report ID (key)
-                        String actualReportId = reportSnapshot.getKey();
-
-                        // Parse Firebase data
-                        String category = reportSnapshot.child("category").getValue(String.class);
-                        String description = reportSnapshot.child("description").getValue(String.class);
-                        String imageUrl = reportSnapshot.child("imageUrl").getValue(String.class);
-                        String status = reportSnapshot.child("status").getValue(String.class);
-                        String title = reportSnapshot.child("title").getValue(String.class);
-                        String userId = reportSnapshot.child("userId").getValue(String.class);
-                        String userName = reportSnapshot.child("userName").getValue(String.class);
-
-                        // Get numeric values
-                        Double latitude = reportSnapshot.child("latitude").getValue(Double.class);
-                        Double longitude = reportSnapshot.child("longitude").getValue(Double.class);
-                        Long timestamp = reportSnapshot.child("timestamp").getValue(Long.class);
-
-                        // Create Complaint object
-                        Complaint complaint = new Complaint();
-                        complaint.setReportId(actualReportId != null ? actualReportId : "N/A");
-                        complaint.setId(userName != null ? userName : "Anonymous");
-                        complaint.setTitle(title != null ? title : "Untitled");
-                        complaint.setDescription(description != null ? description : "No description");
-                        complaint.setStatus(status != null ? status : "pending");
-                        complaint.setCategory(category != null ? category : "Other");
-                        complaint.setImageUrl(imageUrl);
-                        complaint.setUserId(userId); // âœ… Store userId for email lookup
-                        complaint.setUserName(userName != null ? userName : "Anonymous");
-
-                        if (latitude != null) complaint.setLatitude(latitude);
-                        if (longitude != null) complaint.setLongitude(longitude);
-                        if (timestamp != null) {
-                            complaint.setTimestamp(timestamp);
-                            String dateStr = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
-                                    .format(new Date(timestamp));
-                            complaint.setDate(dateStr);
-                        } else {
-                            complaint.setDate("N/A");
-                        }
-
-                        complaint.setLocation(category != null ? category : "Unknown Location");
-
-                        complaints.add(complaint);
-
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error parsing complaint: " + e.getMessage());
-                    }
-                }
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_complaints_bulk, menu);
+            return true;
+        }
 
-                // Update UI
-                progressBar.setVisibility(View.GONE);
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
 
-                if (complaints.isEmpty()) {
-                    emptyTextView.setVisibility(View.VISIBLE);
-                    complaintsRecyclerView.setVisibility(View.GONE);
-                } else {
-                    emptyTextView.setVisibility(View.GONE);
-                    complaintsRecyclerView.setVisibility(View.VISIBLE);
-                    adapter.setComplaints(complaints);
-                }
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            int id = item.getItemId();
+            if (id == R.id.action_mark_acknowledged) {
+                bulkUpdateStatus("acknowledged");
+                return true;
+            } else if (id == R.id.action_mark_ongoing) {
+                bulkUpdateStatus("ongoing");
+                return true;
+            } else if (id == R.id.action_mark_resolved) {
+                bulkUpdateStatus("resolved");
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            adapter.clearSelection();
+        }
+    };
 
-                Log.d(TAG, "Loaded " + complaints.size() + " complaints from Firebase");
+    /**
+     * Set the status of every selected complaint in one atomic write. The rows
+     * show the new status straight away and go back if the write fails.
+     */
+    private void bulkUpdateStatus(String newStatus) {
+        List<Complaint> selected = adapter.getSelectedComplaints();
+        if (selected.isEmpty()) return;
+
+        adapter.setPendingStatus(selected, newStatus);
+        if (selectionMode != null) selectionMode.finish();
+
+        ReportGeoIndex.updateStatuses(cityKey, selected, newStatus)
+                .addOnSuccessListener(aVoid -> {
+                    adapter.clearPendingStatus(selected);
+                    Toast.makeText(ComplaintsActivity.this,
+                            selected.size() + (selected.size() == 1 ? " complaint" : " complaints")
+                                    + " marked " + newStatus,
+                            Toast.LENGTH_SHORT).show();
+                })
+                .addOnFailureListener(e -> {
+                    adapter.clearPendingStatus(selected);
+                    Toast.makeText(ComplaintsActivity.this,
+                            "Failed to update status: " + e.getMessage(),
+                            Toast.LENGTH_SHORT).show();
+                    Log.e(TAG, "Bulk status update failed", e);
+                });
+    }
+
+    private void loadComplaintsFromFirebase() {
+        progressBar.setVisibility(View.VISIBLE);
+        complaintsRecyclerView.setVisibility(View.GONE);
+        emptyTextView.setVisibility(View.GONE);
+
+        // Only the selected city's shard of the queue is downloaded, a page at a time
+        ReportCityShard.City city = ReportCityShard.find(cityName);
+        cityKey = city != null ? city.getKey() : ReportCityShard.OTHER_KEY;
+        DatabaseReference queueRef = ReportCityShard.shardRef(cityKey);
+
+        updateFilterSummary();
+        pager = new ComplaintPager(queueRef, filter, ComplaintPager.DEFAULT_PAGE_SIZE, new ComplaintPager.Listener() {
+            @Override
+            public void onComplaintsChanged(List<Complaint> complaints, boolean hasMore) {
+                showComplaints(complaints);
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onError(String error) {
                 progressBar.setVisibility(View.GONE);
-                emptyTextView.setVisibility(View.VISIBLE);
-                emptyTextView.setText("Error loading complaints");
+                if (adapter.getItemCount() == 0) {
+                    emptyTextView.setVisibility(View.VISIBLE);
+                    emptyTextView.setText("Error loading complaints");
+                }
 
                 Toast.makeText(ComplaintsActivity.this,
-                        "Failed to load complaints: " + databaseError.getMessage(),
+                        "Failed to load complaints: " + error,
                         Toast.LENGTH_SHORT).show();
 
-                Log.e(TAG, "Database error: " + databaseError.getMessage());
+                Log.e(TAG, "Database error: " + error);
             }
-        };
+        });
+        pager.loadNextPage();
+    }
+
+    private void showComplaints(List<Complaint> complaints) {
+        // Update UI
+        progressBar.setVisibility(View.GONE);
+
+        adapter.setComplaints(complaints);
+        if (complaints.isEmpty()) {
+            emptyTextView.setVisibility(View.VISIBLE);
+            emptyTextView.setText(filter.isFiltered()
+                    ? "No complaints match these filters" : "No complaints found");
+            complaintsRecyclerView.setVisibility(View.GONE);
+        } else {
+            emptyTextView.setVisibility(View.GONE);
+            complaintsRecyclerView.setVisibility(View.VISIBLE);
+        }
 
-        // Attach the listener
-        reportsRef.addValueEventListener(reportsListener);
+        Log.d(TAG, "Showing " + complaints.size() + " complaints");
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Remove listener to prevent memory leaks
-        if (reportsRef != null && reportsListener != null) {
-            reportsRef.removeEventListener(reportsListener);
+        // Remove the page listeners to prevent memory leaks
+        if (pager != null) {
+            pager.detachAll();
         }
     }
 
@@ -9,27 +9,141 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.card.MaterialCardView;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class ComplaintsAdapter extends RecyclerView.Adapter<ComplaintsAdapter.ComplaintViewHolder> {
 
     private Context context;
-    private List<Complaint> complaints;
+    private final KeyedListDiffer<Complaint> complaints;
     private OnComplaintClickListener clickListener;
+    private final AddressCache addressCache;
+    private final UserProfileCache profileCache;
+
+    // Multi-select for bulk actions, by reportId
+    private final Set<String> selectedIds = new HashSet<>();
+    private SelectionListener selectionListener;
+    // Statuses shown ahead of a write being confirmed, by reportId
+    private final Map<String, String> pendingStatuses = new HashMap<>();
 
     public interface OnComplaintClickListener {
         void onComplaintClick(Complaint complaint);
     }
 
+    public interface SelectionListener {
+        /**
+         * Called whenever rows are selected or deselected, with 0 once none are
+         */
+        void onSelectionChanged(int count);
+    }
+
     public ComplaintsAdapter(Context context, OnComplaintClickListener listener) {
         this.context = context;
-        this.complaints = new ArrayList<>();
+        this.complaints = new KeyedListDiffer<>(this, Complaint::getReportId, ComplaintsAdapter::sameContents);
         this.clickListener = listener;
+        this.addressCache = AddressCache.getInstance(context);
+        this.profileCache = UserProfileCache.getInstance(context);
     }
 
+    /**
+     * Show a new list, rebinding only the rows that changed
+     */
     public void setComplaints(List<Complaint> complaints) {
-        this.complaints = complaints;
-        notifyDataSetChanged();
+        this.complaints.submit(complaints);
+    }
+
+    public void setSelectionListener(SelectionListener selectionListener) {
+        this.selectionListener = selectionListener;
+    }
+
+    public boolean isSelecting() {
+        return !selectedIds.isEmpty();
+    }
+
+    /**
+     * Selected complaints still in the list, in list order
+     */
+    public List<Complaint> getSelectedComplaints() {
+        List<Complaint> selected = new ArrayList<>();
+        for (Complaint complaint : complaints.getItems()) {
+            if (selectedIds.contains(complaint.getReportId())) {
+                selected.add(complaint);
+            }
+        }
+        return selected;
+    }
+
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) return;
+        List<String> cleared = new ArrayList<>(selectedIds);
+        selectedIds.clear();
+        for (String reportId : cleared) {
+            notifyReportChanged(reportId);
+        }
+        if (selectionListener != null) selectionListener.onSelectionChanged(0);
+    }
+
+    private void toggleSelection(Complaint complaint) {
+        String reportId = complaint.getReportId();
+        if (!selectedIds.remove(reportId)) {
+            selectedIds.add(reportId);
+        }
+        notifyReportChanged(reportId);
+        if (selectionListener != null) selectionListener.onSelectionChanged(selectedIds.size());
+    }
+
+    /**
+     * Show a status on these rows before the write behind it is confirmed
+     */
+    public void setPendingStatus(Collection<Complaint> changed, String status) {
+        for (Complaint complaint : changed) {
+            pendingStatuses.put(complaint.getReportId(), status);
+            notifyReportChanged(complaint.getReportId());
+        }
+    }
+
+    /**
+     * Go back to showing the rows' own statuses, once the write is confirmed or has failed
+     */
+    public void clearPendingStatus(Collection<Complaint> changed) {
+        for (Complaint complaint : changed) {
+            if (pendingStatuses.remove(complaint.getReportId()) != null) {
+                notifyReportChanged(complaint.getReportId());
+            }
+        }
+    }
+
+    private void notifyReportChanged(String reportId) {
+        List<Complaint> items = complaints.getItems();
+        for (int i = 0; i < items.size(); i++) {
+            if (reportId.equals(items.get(i).getReportId())) {
+                notifyItemChanged(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Everything a row shows or passes on to the detail screen
+     */
+    private static boolean sameContents(Complaint a, Complaint b) {
+        return Objects.equals(a.getId(), b.getId())
+                && Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && Objects.equals(a.getDate(), b.getDate())
+                && Objects.equals(a.getLocation(), b.getLocation())
+                && Objects.equals(a.getCategory(), b.getCategory())
+                && Objects.equals(a.getImageUrl(), b.getImageUrl())
+                && Objects.equals(a.getUserId(), b.getUserId())
+                && Objects.equals(a.getUserName(), b.getUserName())
+                && a.getLatitude() == b.getLatitude()
+                && a.getLongitude() == b.getLongitude();
     }
 
     @NonNull
@@ -46,13 +160,15 @@ public class ComplaintsAdapter extends RecyclerView.Adapter<ComplaintsAdapter.Co
         holder.idTextView.setText(complaint.getId()); // This will show username
         holder.titleTextView.setText(complaint.getTitle());
         holder.descriptionTextView.setText(complaint.getDescription());
-        holder.statusTextView.setText(complaint.getStatus());
+        String shownStatus = pendingStatuses.containsKey(complaint.getReportId())
+                ? pendingStatuses.get(complaint.getReportId()) : complaint.getStatus();
+        holder.statusTextView.setText(shownStatus);
         holder.dateTextView.setText(complaint.getDate());
-        holder.locationTextView.setText(complaint.getLocation());
+        bindAddress(holder, complaint);
 
         // Set status color
         int statusColor;
-        String status = complaint.getStatus() != null ? complaint.getStatus().toLowerCase() : "pending";
+        String status = shownStatus != null ? shownStatus.toLowerCase() : "pending";
         switch (status) {
             case "resolved":
                 statusColor = context.getColor(R.color.status_resolved);
@@ -70,12 +186,77 @@ public class ComplaintsAdapter extends RecyclerView.Adapter<ComplaintsAdapter.Co
         }
         holder.statusTextView.setTextColor(statusColor);
 
-        // Set click listener
+        // Outline selected rows
+        boolean selected = selectedIds.contains(complaint.getReportId());
+        holder.cardView.setStrokeColor(context.getColor(R.color.primary));
+        holder.cardView.setStrokeWidth(selected
+                ? Math.round(2 * context.getResources().getDisplayMetrics().density) : 0);
+
+        // Set click listener, taps toggle the selection while selecting
         holder.itemView.setOnClickListener(v -> {
-            if (clickListener != null) {
+            if (isSelecting()) {
+                toggleSelection(complaint);
+            } else if (clickListener != null) {
                 clickListener.onComplaintClick(complaint);
             }
         });
+
+        // Long press starts selecting
+        holder.itemView.setOnLongClickListener(v -> {
+            toggleSelection(complaint);
+            return true;
+        });
+    }
+
+    /**
+     * Show the locality if it's cached, otherwise the category until the lookup returns
+     */
+    private void bindAddress(ComplaintViewHolder holder, Complaint complaint) {
+        holder.boundReportId = complaint.getReportId();
+        if (complaint.getLatitude() == 0 && complaint.getLongitude() == 0) {
+            holder.locationTextView.setText(complaint.getLocation());
+            return;
+        }
+
+        String address = addressCache.peek(complaint.getLatitude(), complaint.getLongitude());
+        if (address != null) {
+            holder.locationTextView.setText(address);
+            return;
+        }
+
+        holder.locationTextView.setText(complaint.getLocation());
+        String reportId = complaint.getReportId();
+        addressCache.lookup(complaint.getLatitude(), complaint.getLongitude(), result -> {
+            // The row may have been recycled for another complaint meanwhile
+            if (result != null && reportId.equals(holder.boundReportId)) {
+                holder.locationTextView.setText(result);
+            }
+        });
+    }
+
+    /**
+     * Read reporter profiles for these rows in one batch, so tapping one opens it straight away
+     */
+    public void prefetchProfiles(int fromPosition, int toPosition) {
+        Set<String> userIds = new HashSet<>();
+        for (int i = Math.max(0, fromPosition); i < Math.min(complaints.size(), toPosition); i++) {
+            userIds.add(complaints.get(i).getUserId());
+        }
+        profileCache.prefetch(userIds);
+    }
+
+    /**
+     * Look up addresses for rows about to scroll into view
+     */
+    public void prefetchAddresses(int fromPosition, int toPosition) {
+        List<double[]> locations = new ArrayList<>();
+        for (int i = Math.max(0, fromPosition); i < Math.min(complaints.size(), toPosition); i++) {
+            Complaint complaint = complaints.get(i);
+            if (complaint.getLatitude() != 0 || complaint.getLongitude() != 0) {
+                locations.add(new double[]{complaint.getLatitude(), complaint.getLongitude()});
+            }
+        }
+        addressCache.prefetch(locations);
     }
 
     @Override
@@ -84,10 +265,13 @@ public class ComplaintsAdapter extends RecyclerView.Adapter<ComplaintsAdapter.Co
     }
 
     static class ComplaintViewHolder extends RecyclerView.ViewHolder {
+        MaterialCardView cardView;
         TextView idTextView, titleTextView, descriptionTextView, statusTextView, dateTextView, locationTextView;
+        String boundReportId;
 
         public ComplaintViewHolder(@NonNull View itemView) {
             super(itemView);
+            cardView = (MaterialCardView) itemView;
             idTextView = itemView.findViewById(R.id.complaintIdTextView);
             titleTextView = itemView.findViewById(R.id.complaintTitleTextView);
             descriptionTextView = itemView.findViewById(R.id.complaintDescriptionTextView);
@@ -0,0 +1,80 @@
+package com.example.xavierproject;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * OkHttp request body that streams a content URI straight from the
+ * ContentResolver instead of copying it to a temp file first
+ */
+public class ContentUriRequestBody extends RequestBody {
+
+    private static final String TAG = "ContentUriRequestBody";
+
+    private final ContentResolver contentResolver;
+    private final Uri uri;
+    private final MediaType mediaType;
+    private final long contentLength;
+
+    public ContentUriRequestBody(ContentResolver contentResolver, Uri uri, @Nullable MediaType mediaType) {
+        this.contentResolver = contentResolver;
+        this.uri = uri;
+        this.mediaType = mediaType;
+        this.contentLength = queryContentLength(contentResolver, uri);
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return mediaType;
+    }
+
+    /**
+     * Known length lets OkHttp send a Content-Length header instead of chunked encoding
+     */
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        // Reopened on every call, OkHttp may write the body again when retrying
+        InputStream inputStream = contentResolver.openInputStream(uri);
+        if (inputStream == null) {
+            throw new FileNotFoundException("Failed to open input stream from URI");
+        }
+        try (Source source = Okio.source(inputStream)) {
+            sink.writeAll(source);
+        }
+    }
+
+    /**
+     * Get size of the content behind a URI, or -1 if the provider doesn't report it
+     */
+    public static long queryContentLength(ContentResolver contentResolver, Uri uri) {
+        try (AssetFileDescriptor descriptor = contentResolver.openAssetFileDescriptor(uri, "r")) {
+            if (descriptor != null && descriptor.getLength() != AssetFileDescriptor.UNKNOWN_LENGTH) {
+                return descriptor.getLength();
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read content length: " + e.getMessage());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.xavierproject;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * Wraps a request body and reports every byte written to the network
+ * sink to an {@link UploadProgressTracker}
+ */
+public class CountingRequestBody extends RequestBody {
+
+    private final RequestBody delegate;
+    private final long offset;
+    private final UploadProgressTracker tracker;
+
+    /**
+     * @param delegate Body to send
+     * @param offset Bytes of the whole upload that precede this body, e.g. earlier chunks
+     * @param tracker Receives the running total
+     */
+    public CountingRequestBody(RequestBody delegate, long offset, UploadProgressTracker tracker) {
+        this.delegate = delegate;
+        this.offset = offset;
+        this.tracker = tracker;
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        // Counts from zero on every call, OkHttp may write the body again when retrying
+        BufferedSink countingSink = Okio.buffer(new ForwardingSink(sink) {
+            private long written;
+
+            @Override
+            public void write(@NonNull Buffer source, long byteCount) throws IOException {
+                super.write(source, byteCount);
+                written += byteCount;
+                tracker.update(offset + written);
+            }
+        });
+        delegate.writeTo(countingSink);
+        countingSink.flush();
+    }
+}
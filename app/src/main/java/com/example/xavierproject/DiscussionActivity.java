@@ -274,6 +274,8 @@ public class DiscussionActivity extends AppCompatActivity {
                 for (DataSnapshot postSnapshot : snapshot.getChildren()) {
                     Post post = postSnapshot.getValue(Post.class);
                     if (post != null) {
+                        // Rows are matched by id between updates
+                        if (post.getPostId() == null) post.setPostId(postSnapshot.getKey());
                         allPosts.add(post);
                     }
                 }
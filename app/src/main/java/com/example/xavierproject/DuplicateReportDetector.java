@@ -0,0 +1,108 @@
+package com.example.xavierproject;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Looks for open reports of the same category close to a new one, so the
+ * user can endorse an existing report instead of filing a duplicate.
+ */
+public class DuplicateReportDetector {
+
+    private static final String TAG = "DuplicateReportDetector";
+    private static final double DEFAULT_RADIUS_METERS = 50;
+    private static final long DEFAULT_WINDOW_MS = 30 * 24 * 60 * 60 * 1000L;
+
+    // Don't hold up submitting when the index can't be reached, e.g. offline
+    private static final long LOOKUP_TIMEOUT_MS = 3000;
+
+    private final ReportGeoIndex geoIndex = new ReportGeoIndex();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private double radiusMeters = DEFAULT_RADIUS_METERS;
+    private long windowMs = DEFAULT_WINDOW_MS;
+
+    public interface Callback {
+        /**
+         * @param matches Possible duplicates, closest first. Empty if none or the lookup failed.
+         */
+        void onResult(List<ReportGeoIndex.Entry> matches);
+    }
+
+    public DuplicateReportDetector setRadiusMeters(double radiusMeters) {
+        this.radiusMeters = radiusMeters;
+        return this;
+    }
+
+    public DuplicateReportDetector setWindowMs(long windowMs) {
+        this.windowMs = windowMs;
+        return this;
+    }
+
+    /**
+     * Find open reports in the same category within the radius and time window
+     * @param callback Called once on the main thread
+     */
+    public void findDuplicates(String category, double latitude, double longitude, Callback callback) {
+        final boolean[] delivered = {false};
+        Runnable timeout = () -> {
+            if (!delivered[0]) {
+                delivered[0] = true;
+                Log.w(TAG, "Duplicate lookup timed out");
+                callback.onResult(Collections.emptyList());
+            }
+        };
+        mainHandler.postDelayed(timeout, LOOKUP_TIMEOUT_MS);
+
+        long since = System.currentTimeMillis() - windowMs;
+        geoIndex.findWithin(latitude, longitude, radiusMeters, new ReportGeoIndex.QueryCallback() {
+            @Override
+            public void onResult(List<ReportGeoIndex.Entry> entries) {
+                if (delivered[0]) return;
+                delivered[0] = true;
+                mainHandler.removeCallbacks(timeout);
+
+                List<ReportGeoIndex.Entry> matches = new ArrayList<>();
+                for (ReportGeoIndex.Entry entry : entries) {
+                    if (category.equalsIgnoreCase(entry.getCategory())
+                            && !"resolved".equalsIgnoreCase(entry.getStatus())
+                            && entry.getTimestamp() >= since) {
+                        matches.add(entry);
+                    }
+                }
+                Collections.sort(matches, (a, b) -> Double.compare(
+                        a.distanceTo(latitude, longitude), b.distanceTo(latitude, longitude)));
+                Log.d(TAG, "Found " + matches.size() + " possible duplicates");
+                callback.onResult(matches);
+            }
+
+            @Override
+            public void onError(String error) {
+                if (delivered[0]) return;
+                delivered[0] = true;
+                mainHandler.removeCallbacks(timeout);
+                callback.onResult(Collections.emptyList());
+            }
+        });
+    }
+
+    /**
+     * Add the user's support to an existing report. Endorsing twice has no extra effect.
+     */
+    public Task<Void> endorse(String reportId, String userId) {
+        return FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app")
+                .getReference("reports")
+                .child(reportId)
+                .child("endorsements")
+                .child(userId)
+                .setValue(ServerValue.TIMESTAMP);
+    }
+}
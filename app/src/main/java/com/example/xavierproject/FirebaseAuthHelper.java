@@ -1,13 +1,11 @@
 package com.example.xavierproject;
 
+import android.content.Context;
 import android.util.Log;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 public class FirebaseAuthHelper {
 
@@ -32,11 +30,10 @@ public class FirebaseAuthHelper {
     /**
      * Get user email by userId from Firebase Authentication
      * Note: This method looks up email from a user's profile in Realtime Database
-     * because Firebase Auth doesn't allow querying other users' emails directly
-     *
-     * Alternative: Store email in Realtime Database when user registers
+     * because Firebase Auth doesn't allow querying other users' emails directly.
+     * Profiles are cached, see UserProfileCache.
      */
-    public static void getUserEmailByUserId(String userId, EmailCallback callback) {
+    public static void getUserEmailByUserId(Context context, String userId, EmailCallback callback) {
         // Check if it's the current user
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         if (currentUser != null && currentUser.getUid().equals(userId)) {
@@ -48,31 +45,12 @@ public class FirebaseAuthHelper {
         }
 
         // For other users, we need to get it from Realtime Database
-        // You should store email in the database when user creates a report
-        DatabaseReference usersRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app")
-                .getReference("users")
-                .child(userId);
-
-        usersRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    String email = dataSnapshot.child("email").getValue(String.class);
-                    if (email != null && !email.isEmpty()) {
-                        callback.onEmailFetched(email);
-                    } else {
-                        Log.w(TAG, "Email not found for user: " + userId);
-                        callback.onEmailNotFound();
-                    }
-                } else {
-                    Log.w(TAG, "User data not found for userId: " + userId);
-                    callback.onEmailNotFound();
-                }
-            }
-
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                Log.e(TAG, "Error fetching user email: " + databaseError.getMessage());
+        UserProfileCache.getInstance(context).lookup(userId, profile -> {
+            String email = profile != null ? profile.getEmail() : null;
+            if (email != null && !email.isEmpty()) {
+                callback.onEmailFetched(email);
+            } else {
+                Log.w(TAG, "Email not found for user: " + userId);
                 callback.onEmailNotFound();
             }
         });
@@ -0,0 +1,252 @@
+package com.example.xavierproject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Geohash encoding. Nearby points share a prefix, which lets location
+ * lookups read a handful of index keys instead of the whole reports node.
+ */
+public class GeoHash {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final double EARTH_RADIUS_METERS = 6371000;
+
+    /**
+     * Encode a point to a geohash of the given length
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int index = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    index = index * 2 + 1;
+                    minLng = mid;
+                } else {
+                    index = index * 2;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    index = index * 2 + 1;
+                    minLat = mid;
+                } else {
+                    index = index * 2;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(index));
+                bit = 0;
+                index = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Decode a geohash to the cell it covers
+     * @return {minLat, minLng, maxLat, maxLng}
+     */
+    public static double[] bounds(String hash) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        boolean evenBit = true;
+
+        for (int i = 0; i < hash.length(); i++) {
+            int index = BASE32.indexOf(hash.charAt(i));
+            if (index < 0) {
+                throw new IllegalArgumentException("Invalid geohash: " + hash);
+            }
+            for (int n = 4; n >= 0; n--) {
+                int bitValue = (index >> n) & 1;
+                if (evenBit) {
+                    double mid = (minLng + maxLng) / 2;
+                    if (bitValue == 1) minLng = mid; else maxLng = mid;
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (bitValue == 1) minLat = mid; else maxLat = mid;
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[]{minLat, minLng, maxLat, maxLng};
+    }
+
+    /**
+     * Smallest set of prefix ranges covering a bounding box. Uses the
+     * finest precision (up to maxPrecision) whose cells fit in maxCells,
+     * then merges consecutive cells into ranges.
+     * @param maxPrecision Precision of the indexed keys, ranges are never finer than this
+     * @param maxCells Upper bound on cells before merging, trades over-fetch for query count
+     */
+    public static List<Range> cover(double minLat, double minLng, double maxLat, double maxLng,
+                                    int maxPrecision, int maxCells) {
+        List<Range> ranges = new ArrayList<>();
+        Range current = null;
+        for (String cell : coverCells(minLat, minLng, maxLat, maxLng, maxPrecision, maxCells)) {
+            if (current != null && cell.equals(successor(current.end))) {
+                current = new Range(current.start, cell);
+                ranges.set(ranges.size() - 1, current);
+            } else {
+                current = new Range(cell, cell);
+                ranges.add(current);
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Cells covering a bounding box at the finest precision that fits in maxCells, in key order.
+     * Unlike ranges, cells stay the same while the box pans, so they suit caching.
+     */
+    public static List<String> coverCells(double minLat, double minLng, double maxLat, double maxLng,
+                                          int maxPrecision, int maxCells) {
+        minLat = Math.max(-90, minLat);
+        maxLat = Math.min(90, maxLat);
+        // Boxes crossing the antimeridian aren't needed for this app, cover the whole longitude span
+        if (minLng > maxLng) {
+            minLng = -180;
+            maxLng = 180;
+        }
+
+        int precision = maxPrecision;
+        while (precision > 1 && estimateCells(minLat, minLng, maxLat, maxLng, precision) > maxCells) {
+            precision--;
+        }
+
+        double[] size = cellSizeDegrees(precision);
+        double[] first = bounds(encode(minLat, minLng, precision));
+        TreeSet<String> cells = new TreeSet<>();
+        for (double lat = first[0] + size[0] / 2; lat - size[0] / 2 <= maxLat; lat += size[0]) {
+            for (double lng = first[1] + size[1] / 2; lng - size[1] / 2 <= maxLng; lng += size[1]) {
+                cells.add(encode(Math.min(lat, 90), wrapLongitude(lng), precision));
+            }
+        }
+        return new ArrayList<>(cells);
+    }
+
+    /**
+     * Ranges covering a circle, via its bounding box
+     */
+    public static List<Range> coverRadius(double latitude, double longitude, double radiusMeters,
+                                          int maxPrecision, int maxCells) {
+        double metersPerDegree = Math.PI * EARTH_RADIUS_METERS / 180;
+        double dLat = radiusMeters / metersPerDegree;
+        double dLng = dLat / Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+        return cover(latitude - dLat, longitude - dLng, latitude + dLat, longitude + dLng,
+                maxPrecision, maxCells);
+    }
+
+    private static long estimateCells(double minLat, double minLng, double maxLat, double maxLng, int precision) {
+        double[] size = cellSizeDegrees(precision);
+        long rows = (long) Math.ceil((maxLat - minLat) / size[0]) + 1;
+        long cols = (long) Math.ceil((maxLng - minLng) / size[1]) + 1;
+        return rows * cols;
+    }
+
+    /**
+     * @return {heightDegrees, widthDegrees}
+     */
+    private static double[] cellSizeDegrees(int precision) {
+        int bits = precision * 5;
+        return new double[]{180 / Math.pow(2, bits / 2), 360 / Math.pow(2, (bits + 1) / 2)};
+    }
+
+    /**
+     * Next geohash of the same length in key order, or null after "zzz..."
+     */
+    private static String successor(String hash) {
+        char[] chars = hash.toCharArray();
+        for (int i = chars.length - 1; i >= 0; i--) {
+            int index = BASE32.indexOf(chars[i]);
+            if (index < BASE32.length() - 1) {
+                chars[i] = BASE32.charAt(index + 1);
+                return new String(chars);
+            }
+            chars[i] = BASE32.charAt(0);
+        }
+        return null;
+    }
+
+    /**
+     * Size of a cell at the given precision near a latitude
+     * @return {heightMeters, widthMeters}
+     */
+    public static double[] cellSizeMeters(int precision, double latitude) {
+        double[] degrees = cellSizeDegrees(precision);
+        double metersPerDegree = Math.PI * EARTH_RADIUS_METERS / 180;
+        return new double[]{
+                degrees[0] * metersPerDegree,
+                degrees[1] * metersPerDegree * Math.cos(Math.toRadians(latitude))
+        };
+    }
+
+    /**
+     * Great-circle distance between two points
+     */
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private static double wrapLongitude(double longitude) {
+        if (longitude > 180) return longitude - 360;
+        if (longitude < -180) return longitude + 360;
+        return longitude;
+    }
+
+    /**
+     * Inclusive range of geohash prefixes. Every key starting with a
+     * prefix between start and end (at the same length) falls in it.
+     */
+    public static class Range {
+        private final String start;
+        private final String end;
+
+        public Range(String start, String end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getStart() {
+            return start;
+        }
+
+        public String getEnd() {
+            return end;
+        }
+
+        /**
+         * Last key of the range for an orderByKey() query, '~' sorts after every geohash character
+         */
+        public String getEndKey() {
+            return end + "~";
+        }
+
+        public boolean contains(String hash) {
+            String prefix = hash.length() > start.length() ? hash.substring(0, start.length()) : hash;
+            return prefix.compareTo(start) >= 0 && prefix.compareTo(end) <= 0;
+        }
+
+        @Override
+        public String toString() {
+            return start.equals(end) ? start : start + ".." + end;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.xavierproject;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders report density as heatmap tiles. The map calls getTile on its own
+ * background threads; tiles are cached in memory and on disk under a hash
+ * of the reports they contain, so when reports change only the tiles those
+ * reports touch are rendered again.
+ */
+public class HeatmapTileProvider implements TileProvider {
+
+    private static final String TAG = "HeatmapTileProvider";
+
+    private static final int TILE_SIZE = 256;
+    // Blur radius of one report, in tile pixels
+    private static final int RADIUS_PX = 24;
+    private static final int MEMORY_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final long DISK_CACHE_BYTES = 16 * 1024 * 1024;
+    private static final String DISK_CACHE_DIR = "heatmap_tiles";
+
+    // Transparent to green to yellow to red, indexed by intensity 0..255
+    private static final int[] COLOR_MAP = buildColorMap();
+    private static final float[] KERNEL = buildKernel();
+
+    /**
+     * How much one report counts towards the heat
+     */
+    public interface Weigher {
+        float weigh(ReportGeoIndex.Entry report);
+    }
+
+    /**
+     * Open reports count fully, work in progress less, resolved barely.
+     * Hazards such as exposed wiring, blocked drains and potholes count extra.
+     */
+    public static final Weigher DEFAULT_WEIGHER = report -> {
+        String status = report.getStatus() != null ? report.getStatus().toLowerCase() : "";
+        float weight;
+        switch (status) {
+            case "resolved":
+                weight = 0.1f;
+                break;
+            case "acknowledged":
+            case "ongoing":
+                weight = 0.6f;
+                break;
+            default:
+                weight = 1f;
+        }
+        String category = report.getCategory() != null ? report.getCategory().trim() : "";
+        for (String hazard : ReportFragment.HAZARD_CATEGORIES) {
+            if (hazard.equalsIgnoreCase(category)) {
+                weight *= 1.5f;
+                break;
+            }
+        }
+        return weight;
+    };
+
+    private final File diskCacheDir;
+    // Approximate size on disk, tiles are written from the map's tile threads
+    private final AtomicLong diskCacheBytes = new AtomicLong();
+    private final AtomicBoolean trimQueued = new AtomicBoolean(true);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, byte[]> memoryCache = new LruCache<String, byte[]>(MEMORY_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, byte[] value) {
+            return value.length;
+        }
+    };
+    private Weigher weigher = DEFAULT_WEIGHER;
+    private volatile Points points = Points.EMPTY;
+
+    public HeatmapTileProvider(Context context) {
+        diskCacheDir = new File(context.getCacheDir(), DISK_CACHE_DIR);
+        executor.execute(this::trimDiskCache);
+    }
+
+    public void setWeigher(Weigher weigher) {
+        this.weigher = weigher;
+    }
+
+    /**
+     * Replace the reports shown. Tiles whose reports didn't change keep their cache entries.
+     * @param onReady Called on the main thread once new tiles can be fetched,
+     *                typically to clear the overlay's tile cache
+     */
+    public void setReports(Collection<ReportGeoIndex.Entry> reports, Runnable onReady) {
+        final ReportGeoIndex.Entry[] snapshot = reports.toArray(new ReportGeoIndex.Entry[0]);
+        final Weigher currentWeigher = weigher;
+        executor.execute(() -> {
+            points = Points.build(snapshot, currentWeigher);
+            mainHandler.post(onReady);
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        memoryCache.evictAll();
+    }
+
+    @Override
+    public Tile getTile(int x, int y, int zoom) {
+        Points current = points;
+        double scale = 1L << zoom;
+        // Reports just outside the tile still bleed into it
+        double margin = (double) RADIUS_PX / TILE_SIZE;
+        double minX = (x - margin) / scale;
+        double maxX = (x + 1 + margin) / scale;
+        double minY = (y - margin) / scale;
+        double maxY = (y + 1 + margin) / scale;
+
+        int from = current.firstIndexAtOrAfter(minX);
+        int to = current.firstIndexAtOrAfter(maxX);
+        long hash = 17;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (current.ys[i] < minY || current.ys[i] > maxY) continue;
+            hash = 31 * hash + current.hashes[i];
+            count++;
+        }
+        if (count == 0) {
+            return NO_TILE;
+        }
+
+        // Colours are scaled to the zoom level's peak, which can move when reports elsewhere change
+        hash = 31 * hash + Float.floatToIntBits(current.maxIntensity(zoom));
+        String key = zoom + "_" + x + "_" + y + "_" + Long.toHexString(hash);
+        byte[] png = memoryCache.get(key);
+        if (png == null) {
+            png = readDisk(key);
+            if (png == null) {
+                long start = SystemClock.elapsedRealtime();
+                png = render(current, from, to, x, y, zoom, minY, maxY);
+                writeDisk(key, png);
+                Log.d(TAG, "Rendered tile " + key + " (" + count + " reports) in "
+                        + (SystemClock.elapsedRealtime() - start) + " ms");
+            }
+            memoryCache.put(key, png);
+        }
+        return new Tile(TILE_SIZE, TILE_SIZE, png);
+    }
+
+    private byte[] render(Points current, int from, int to, int tileX, int tileY, int zoom,
+                          double minY, double maxY) {
+        double scale = (1L << zoom) * (double) TILE_SIZE;
+        int padded = TILE_SIZE + 2 * RADIUS_PX;
+        float[] intensity = new float[padded * padded];
+
+        // Splat the kernel of every report onto a grid padded by the blur radius
+        int kernelSize = 2 * RADIUS_PX + 1;
+        for (int i = from; i < to; i++) {
+            if (current.ys[i] < minY || current.ys[i] > maxY) continue;
+            int px = (int) (current.xs[i] * scale - (double) tileX * TILE_SIZE) + RADIUS_PX;
+            int py = (int) (current.ys[i] * scale - (double) tileY * TILE_SIZE) + RADIUS_PX;
+            float weight = current.weights[i];
+            for (int ky = 0; ky < kernelSize; ky++) {
+                int gy = py + ky - RADIUS_PX;
+                if (gy < RADIUS_PX || gy >= RADIUS_PX + TILE_SIZE) continue;
+                int row = gy * padded;
+                int kernelRow = ky * kernelSize;
+                for (int kx = 0; kx < kernelSize; kx++) {
+                    int gx = px + kx - RADIUS_PX;
+                    if (gx < RADIUS_PX || gx >= RADIUS_PX + TILE_SIZE) continue;
+                    intensity[row + gx] += KERNEL[kernelRow + kx] * weight;
+                }
+            }
+        }
+
+        // Same scale for every tile of a zoom level, so tile edges line up
+        float max = current.maxIntensity(zoom);
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        for (int y = 0; y < TILE_SIZE; y++) {
+            int row = (y + RADIUS_PX) * padded + RADIUS_PX;
+            for (int x = 0; x < TILE_SIZE; x++) {
+                float value = intensity[row + x];
+                if (value <= 0) continue;
+                int index = (int) Math.min(255, value / max * 255);
+                pixels[y * TILE_SIZE + x] = COLOR_MAP[index];
+            }
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(pixels, TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+
+    private byte[] readDisk(String key) {
+        File file = new File(diskCacheDir, key + ".png");
+        if (!file.exists()) return null;
+        byte[] data = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) return null;
+                read += n;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading cached tile " + key, e);
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, byte[] png) {
+        if (!diskCacheDir.exists() && !diskCacheDir.mkdirs()) return;
+        File temp = new File(diskCacheDir, key + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(png);
+        } catch (IOException e) {
+            Log.e(TAG, "Error caching tile " + key, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(new File(diskCacheDir, key + ".png"))) {
+            temp.delete();
+            return;
+        }
+        // Keep to the limit within a session too, not just on the next launch
+        if (diskCacheBytes.addAndGet(png.length) > DISK_CACHE_BYTES && trimQueued.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::trimDiskCache);
+            } catch (RejectedExecutionException e) {
+                // Shut down, the next launch trims instead
+                trimQueued.set(false);
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used tiles once the disk cache is over its limit.
+     * Tiles of reports that have since changed are never read again and age out here.
+     */
+    private void trimDiskCache() {
+        trimQueued.set(false);
+        File[] files = diskCacheDir.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        diskCacheBytes.set(total);
+        if (total <= DISK_CACHE_BYTES) return;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        int deleted = 0;
+        for (File file : files) {
+            if (total <= DISK_CACHE_BYTES * 3 / 4) break;
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                deleted++;
+            }
+        }
+        diskCacheBytes.set(total);
+        Log.d(TAG, "Trimmed " + deleted + " cached tiles");
+    }
+
+    private static float[] buildKernel() {
+        int size = 2 * RADIUS_PX + 1;
+        float[] kernel = new float[size * size];
+        double sigma = RADIUS_PX / 3.0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                double dx = x - RADIUS_PX;
+                double dy = y - RADIUS_PX;
+                kernel[y * size + x] = (float) Math.exp(-(dx * dx + dy * dy) / (2 * sigma * sigma));
+            }
+        }
+        return kernel;
+    }
+
+    private static int[] buildColorMap() {
+        int[] colors = new int[256];
+        for (int i = 0; i < 256; i++) {
+            float t = i / 255f;
+            int alpha = (int) Math.min(255, t * 4 * 180);
+            int red, green;
+            if (t < 0.5f) {
+                red = (int) (t * 2 * 255);
+                green = 200;
+            } else {
+                red = 255;
+                green = (int) ((1 - t) * 2 * 200);
+            }
+            colors[i] = Color.argb(alpha, red, green, 0);
+        }
+        colors[0] = Color.TRANSPARENT;
+        return colors;
+    }
+
+    /**
+     * Immutable projected reports, sorted by x so a tile's reports are one index range
+     */
+    private static class Points {
+        static final Points EMPTY = new Points(new double[0], new double[0], new float[0], new long[0]);
+
+        final double[] xs;
+        final double[] ys;
+        final float[] weights;
+        // Identity and content of each report, for tile cache keys
+        final long[] hashes;
+        private final Map<Integer, Float> maxIntensities = new ConcurrentHashMap<>();
+
+        Points(double[] xs, double[] ys, float[] weights, long[] hashes) {
+            this.xs = xs;
+            this.ys = ys;
+            this.weights = weights;
+            this.hashes = hashes;
+        }
+
+        static Points build(ReportGeoIndex.Entry[] reports, Weigher weigher) {
+            int n = reports.length;
+            double[] unsortedX = new double[n];
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                unsortedX[i] = (reports[i].getLongitude() + 180) / 360;
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(unsortedX[a], unsortedX[b]));
+
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            float[] weights = new float[n];
+            long[] hashes = new long[n];
+            for (int i = 0; i < n; i++) {
+                ReportGeoIndex.Entry report = reports[order[i]];
+                xs[i] = unsortedX[order[i]];
+                double sin = Math.sin(Math.toRadians(Math.max(-85, Math.min(85, report.getLatitude()))));
+                ys[i] = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+                weights[i] = weigher.weigh(report);
+                hashes[i] = (long) report.getReportId().hashCode() * 31
+                        + Double.doubleToLongBits(xs[i]) * 17
+                        + Double.doubleToLongBits(ys[i]) * 13
+                        + Float.floatToIntBits(weights[i]);
+            }
+            return new Points(xs, ys, weights, hashes);
+        }
+
+        int firstIndexAtOrAfter(double x) {
+            int low = 0, high = xs.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (xs[mid] < x) low = mid + 1; else high = mid;
+            }
+            return low;
+        }
+
+        /**
+         * Heaviest spot at a zoom level, estimated by binning reports into
+         * cells the size of the blur radius. Used to normalise colours.
+         */
+        float maxIntensity(int zoom) {
+            Float cached = maxIntensities.get(zoom);
+            if (cached != null) return cached;
+
+            double cellsPerWorld = (1L << zoom) * (double) TILE_SIZE / RADIUS_PX;
+            Map<Long, Float> bins = new HashMap<>();
+            float max = 1f;
+            for (int i = 0; i < xs.length; i++) {
+                long key = ((long) (xs[i] * cellsPerWorld) << 32) | (long) (ys[i] * cellsPerWorld);
+                Float sum = bins.get(key);
+                float value = (sum != null ? sum : 0f) + weights[i];
+                bins.put(key, value);
+                max = Math.max(max, value);
+            }
+            maxIntensities.put(zoom, max);
+            return max;
+        }
+    }
+}
@@ -32,7 +32,6 @@ public class HistoryFragment extends Fragment {
     private ProgressBar progressBar;
     private TextView textViewEmpty;
     private ReportAdapter reportAdapter;
-    private List<Complaint> reportList;
 
     private DatabaseReference databaseReference;
     private FirebaseAuth mAuth;
@@ -44,7 +43,6 @@ public class HistoryFragment extends Fragment {
         // Initialize Firebase
         mAuth = FirebaseAuth.getInstance();
         databaseReference = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference("reports");
-        reportList = new ArrayList<>();
     }
 
     @Nullable
@@ -67,7 +65,7 @@ public class HistoryFragment extends Fragment {
     }
 
     private void setupRecyclerView() {
-        reportAdapter = new ReportAdapter(reportList, requireContext());
+        reportAdapter = new ReportAdapter(requireContext());
         recyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
         recyclerView.setAdapter(reportAdapter);
     }
@@ -92,12 +90,14 @@ public class HistoryFragment extends Fragment {
         query.addValueEventListener(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
-                reportList.clear();
+                List<Complaint> reportList = new ArrayList<>();
 
                 if (snapshot.exists()) {
                     for (DataSnapshot dataSnapshot : snapshot.getChildren()) {
                         Complaint Complaint = dataSnapshot.getValue(Complaint.class);
                         if (Complaint != null) {
+                            // Rows are matched by id between updates
+                            Complaint.setReportId(dataSnapshot.getKey());
                             reportList.add(Complaint);
                         }
                     }
@@ -106,9 +106,10 @@ public class HistoryFragment extends Fragment {
                     Collections.sort(reportList, (r1, r2) ->
                             Long.compare(r2.getTimestamp(), r1.getTimestamp()));
 
-                    reportAdapter.notifyDataSetChanged();
+                    reportAdapter.setReports(reportList);
                     showContent();
                 } else {
+                    reportAdapter.setReports(reportList);
                     showEmpty("No reports found. Submit your first Complaint!");
                 }
 
@@ -50,31 +50,24 @@ public class HomeFragment extends Fragment {
     }
 
     private void showCitySelector(String actionType) {
-        String[] cities = {"Mumbai", "Delhi", "Bangalore", "Hyderabad", "Chennai", "Kolkata", "Pune", "Ahmedabad"};
+        // The queue also lists reports from outside every city
+        String[] cities = actionType.equals("complaints")
+                ? ReportCityShard.queueNames() : ReportCityShard.cityNames();
 
         MaterialAlertDialogBuilder builder = new MaterialAlertDialogBuilder(requireContext());
         builder.setTitle("Select City");
         builder.setItems(cities, (dialog, which) -> {
             String selectedCity = cities[which];
-            if (selectedCity.equals("Mumbai")) {
-                if (actionType.equals("maps")) {
-                    // Open Maps Activity
-                    Intent intent = new Intent(getActivity(), MapsActivity.class);
-                    intent.putExtra("CITY_NAME", selectedCity);
-                    startActivity(intent);
-                } else if (actionType.equals("complaints")) {
-                    // Open Complaints Activity
-                    Intent intent = new Intent(getActivity(), ComplaintsActivity.class);
-                    intent.putExtra("CITY_NAME", selectedCity);
-                    startActivity(intent);
-                }
-            } else {
-                // Show message that other cities are coming soon
-                new MaterialAlertDialogBuilder(requireContext())
-                        .setTitle("Coming Soon")
-                        .setMessage(selectedCity + " is currently not available. We're working on it!")
-                        .setPositiveButton("OK", null)
-                        .show();
+            if (actionType.equals("maps")) {
+                // Open Maps Activity
+                Intent intent = new Intent(getActivity(), MapsActivity.class);
+                intent.putExtra("CITY_NAME", selectedCity);
+                startActivity(intent);
+            } else if (actionType.equals("complaints")) {
+                // Open Complaints Activity
+                Intent intent = new Intent(getActivity(), ComplaintsActivity.class);
+                intent.putExtra("CITY_NAME", selectedCity);
+                startActivity(intent);
             }
         });
         builder.setNegativeButton("Cancel", null);
@@ -0,0 +1,320 @@
+package com.example.xavierproject;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+/**
+ * Downscales and recompresses picked photos before they are uploaded.
+ * Must be called from a background thread.
+ */
+public class ImagePreprocessor {
+
+    private static final String TAG = "ImagePreprocessor";
+    private static final String OUTPUT_DIR = "upload_images";
+    private static final long MAX_OUTPUT_AGE_MS = 7 * 24 * 60 * 60 * 1000L;
+
+    // Only one full-size bitmap is decoded at a time, however many uploads run in parallel
+    private static final Object DECODE_LOCK = new Object();
+
+    /**
+     * Downscale, orient and recompress an image into the app's private storage.
+     * Processing the same source with the same options again returns the existing output.
+     * @param context Application context
+     * @param sourceUri URI of the picked image
+     * @param options Size and encoding limits
+     * @return Processed image, or null if the source couldn't be decoded
+     */
+    public static Result process(Context context, Uri sourceUri, Options options) {
+        File privateFile = getPrivateFile(context, sourceUri);
+        if (privateFile != null) {
+            // Images in app-private storage were already processed on their way in
+            String mimeType = privateFile.getName().endsWith(Format.WEBP.extension)
+                    ? Format.WEBP.mimeType : Format.JPEG.mimeType;
+            return new Result(sourceUri, mimeType, privateFile.length());
+        }
+
+        File outputDir = new File(context.getFilesDir(), OUTPUT_DIR);
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            Log.e(TAG, "Failed to create output directory");
+            return null;
+        }
+        pruneStaleOutputs(outputDir);
+
+        String name = UUID.nameUUIDFromBytes((sourceUri.toString() + "|" + options.cacheKey())
+                .getBytes(Charset.forName("UTF-8"))) + options.format.extension;
+        File outputFile = new File(outputDir, name);
+
+        ContentResolver resolver = context.getContentResolver();
+        synchronized (DECODE_LOCK) {
+            // Checked under the lock, a prefetch and a submit may process the same photo
+            if (outputFile.exists() && outputFile.length() > 0) {
+                Log.d(TAG, "Reusing processed image: " + outputFile.getName());
+                return new Result(Uri.fromFile(outputFile), options.format.mimeType, outputFile.length());
+            }
+
+            Bitmap bitmap = null;
+            try {
+                bitmap = decodeSampled(resolver, sourceUri, options.maxDimension);
+                if (bitmap == null) {
+                    Log.e(TAG, "Failed to decode image: " + sourceUri);
+                    return null;
+                }
+                bitmap = scaleToFit(bitmap, options.maxDimension);
+                bitmap = applyOrientation(bitmap, readOrientation(resolver, sourceUri));
+
+                // Re-encoding drops all EXIF metadata, including the GPS tags
+                byte[] encoded = encodeWithinBudget(bitmap, options);
+
+                File partFile = new File(outputDir, name + ".part");
+                try (FileOutputStream outputStream = new FileOutputStream(partFile)) {
+                    outputStream.write(encoded);
+                }
+                if (!partFile.renameTo(outputFile)) {
+                    Log.e(TAG, "Failed to store processed image");
+                    return null;
+                }
+
+                Log.d(TAG, "Processed image: " + bitmap.getWidth() + "x" + bitmap.getHeight()
+                        + ", " + encoded.length + " bytes");
+                return new Result(Uri.fromFile(outputFile), options.format.mimeType, encoded.length);
+            } catch (IOException | OutOfMemoryError e) {
+                Log.e(TAG, "Image preprocessing failed: " + e.getMessage());
+                return null;
+            } finally {
+                if (bitmap != null) bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * Delete a processed image once it has been uploaded
+     */
+    public static void release(Result result) {
+        if (result == null || result.uri.getPath() == null) return;
+        File file = new File(result.uri.getPath());
+        if (file.getParentFile() == null || !OUTPUT_DIR.equals(file.getParentFile().getName())) {
+            // Not ours to delete, e.g. an image held by the report outbox
+            return;
+        }
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete processed image: " + file.getName());
+        }
+    }
+
+    private static File getPrivateFile(Context context, Uri uri) {
+        if (!"file".equals(uri.getScheme()) || uri.getPath() == null) {
+            return null;
+        }
+        File file = new File(uri.getPath());
+        return file.getAbsolutePath().startsWith(context.getFilesDir().getAbsolutePath()) && file.exists()
+                ? file : null;
+    }
+
+    /**
+     * Decode with the largest power-of-two sample size that keeps the long side at or above maxDimension
+     */
+    private static Bitmap decodeSampled(ContentResolver resolver, Uri uri, int maxDimension) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            BitmapFactory.decodeStream(inputStream, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        int longSide = Math.max(bounds.outWidth, bounds.outHeight);
+        int sampleSize = 1;
+        while (longSide / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+
+        BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+        decodeOptions.inSampleSize = sampleSize;
+        decodeOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            return BitmapFactory.decodeStream(inputStream, null, decodeOptions);
+        }
+    }
+
+    private static Bitmap scaleToFit(Bitmap bitmap, int maxDimension) {
+        int longSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longSide <= maxDimension) {
+            return bitmap;
+        }
+        float scale = (float) maxDimension / longSide;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                Math.round(bitmap.getWidth() * scale), Math.round(bitmap.getHeight() * scale), true);
+        if (scaled != bitmap) bitmap.recycle();
+        return scaled;
+    }
+
+    private static int readOrientation(ContentResolver resolver, Uri uri) {
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            if (inputStream == null) return ExifInterface.ORIENTATION_NORMAL;
+            return new ExifInterface(inputStream).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read EXIF orientation: " + e.getMessage());
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    private static Bitmap applyOrientation(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(270);
+                matrix.postScale(-1, 1);
+                break;
+            default:
+                return bitmap;
+        }
+        Bitmap oriented = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (oriented != bitmap) bitmap.recycle();
+        return oriented;
+    }
+
+    /**
+     * Lower the quality step by step until the encoded image fits the byte budget
+     */
+    private static byte[] encodeWithinBudget(Bitmap bitmap, Options options) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(options.maxBytes);
+        int quality = options.initialQuality;
+        while (true) {
+            outputStream.reset();
+            bitmap.compress(options.format.compressFormat, quality, outputStream);
+            if (outputStream.size() <= options.maxBytes || quality <= options.minQuality) {
+                return outputStream.toByteArray();
+            }
+            quality = Math.max(options.minQuality, quality - 10);
+        }
+    }
+
+    private static void pruneStaleOutputs(File outputDir) {
+        File[] files = outputDir.listFiles();
+        if (files == null) return;
+        long cutoff = System.currentTimeMillis() - MAX_OUTPUT_AGE_MS;
+        for (File file : files) {
+            if (file.lastModified() < cutoff && !file.delete()) {
+                Log.w(TAG, "Failed to delete stale image: " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Output encoding
+     */
+    @SuppressWarnings("deprecation")
+    public enum Format {
+        JPEG(Bitmap.CompressFormat.JPEG, "image/jpeg", ".jpg"),
+        // WEBP_LOSSY needs API 30, plain WEBP is lossy below 100 quality
+        WEBP(Bitmap.CompressFormat.WEBP, "image/webp", ".webp");
+
+        final Bitmap.CompressFormat compressFormat;
+        final String mimeType;
+        final String extension;
+
+        Format(Bitmap.CompressFormat compressFormat, String mimeType, String extension) {
+            this.compressFormat = compressFormat;
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Size and encoding limits for processed images
+     */
+    public static class Options {
+        int maxDimension = 1600;
+        int maxBytes = 500 * 1024;
+        int initialQuality = 85;
+        int minQuality = 50;
+        Format format = Format.JPEG;
+
+        public Options setMaxDimension(int maxDimension) {
+            this.maxDimension = maxDimension;
+            return this;
+        }
+
+        public Options setMaxBytes(int maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        public Options setQualityRange(int minQuality, int initialQuality) {
+            this.minQuality = minQuality;
+            this.initialQuality = initialQuality;
+            return this;
+        }
+
+        public Options setFormat(Format format) {
+            this.format = format;
+            return this;
+        }
+
+        String cacheKey() {
+            return maxDimension + "_" + maxBytes + "_" + initialQuality + "_" + minQuality + "_" + format.name();
+        }
+    }
+
+    /**
+     * Processed image ready for upload
+     */
+    public static class Result {
+        private final Uri uri;
+        private final String mimeType;
+        private final long sizeBytes;
+
+        Result(Uri uri, String mimeType, long sizeBytes) {
+            this.uri = uri;
+            this.mimeType = mimeType;
+            this.sizeBytes = sizeBytes;
+        }
+
+        public Uri getUri() {
+            return uri;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+    }
+}
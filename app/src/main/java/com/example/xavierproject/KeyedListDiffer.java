@@ -0,0 +1,105 @@
+package com.example.xavierproject;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Holds an adapter's rows and, on each update, works out what changed on a
+ * background thread. Rows are matched by a stable id, so only rows that were
+ * added, removed, moved or changed are notified and everything else keeps
+ * its view. Lists passed to submit() must not be modified afterwards.
+ */
+public class KeyedListDiffer<T> {
+
+    public interface KeyOf<T> {
+        Object keyOf(T item);
+    }
+
+    public interface SameContents<T> {
+        /**
+         * Whether the row would look the same for both, so it needn't be rebound
+         */
+        boolean sameContents(T oldItem, T newItem);
+    }
+
+    private final KeyOf<T> keyOf;
+    private final AsyncListDiffer<T> differ;
+
+    public KeyedListDiffer(RecyclerView.Adapter<?> adapter, KeyOf<T> keyOf, SameContents<T> sameContents) {
+        this.keyOf = keyOf;
+        this.differ = new AsyncListDiffer<>(adapter, new DiffUtil.ItemCallback<T>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+                return Objects.equals(keyOf.keyOf(oldItem), keyOf.keyOf(newItem));
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+                return sameContents.sameContents(oldItem, newItem);
+            }
+        });
+    }
+
+    /**
+     * Replace the rows, notifying the adapter once the diff is done
+     */
+    public void submit(List<T> items) {
+        differ.submitList(items);
+    }
+
+    /**
+     * @param onCommitted Run on the main thread once the adapter shows the new rows
+     */
+    public void submit(List<T> items, Runnable onCommitted) {
+        differ.submitList(items, onCommitted);
+    }
+
+    /**
+     * Current rows, read only
+     */
+    public List<T> getItems() {
+        return differ.getCurrentList();
+    }
+
+    public T get(int position) {
+        return differ.getCurrentList().get(position);
+    }
+
+    public int size() {
+        return differ.getCurrentList().size();
+    }
+
+    /**
+     * Position of the row with this item's id, or -1
+     */
+    public int indexOf(T item) {
+        Object key = keyOf.keyOf(item);
+        List<T> items = differ.getCurrentList();
+        for (int i = 0; i < items.size(); i++) {
+            if (Objects.equals(keyOf.keyOf(items.get(i)), key)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Drop the row with this item's id, e.g. right after deleting it
+     */
+    public void remove(T item) {
+        remove(item, null);
+    }
+
+    public void remove(T item, Runnable onCommitted) {
+        List<T> items = new ArrayList<>(differ.getCurrentList());
+        int position = indexOf(item);
+        if (position >= 0) {
+            items.remove(position);
+        }
+        differ.submitList(items, onCommitted);
+    }
+}
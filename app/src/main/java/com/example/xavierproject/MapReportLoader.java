@@ -0,0 +1,277 @@
+package com.example.xavierproject;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the reports inside the map's viewport from the geohash index.
+ * Each visible geohash cell is one live region; cells that scroll off
+ * screen are detached and kept in a bounded cache so panning back is instant.
+ * Regions follow child events, so a single report changing only re-reads its cell.
+ * Reports from before the index existed get their entries from ReportIndexBackfill.
+ */
+public class MapReportLoader {
+
+    private static final String TAG = "MapReportLoader";
+
+    // Extra area loaded on each side of the visible region, as a fraction of its size
+    private static final double VIEWPORT_MARGIN = 0.25;
+    private static final int MAX_VIEWPORT_CELLS = 16;
+    private static final int MAX_CACHED_REGIONS = 32;
+
+    public interface Listener {
+        /**
+         * Reports of all live regions, called on the main thread whenever one of them changes
+         */
+        void onReportsChanged(Collection<ReportGeoIndex.Entry> reports);
+        void onError(String error);
+    }
+
+    private final ReportGeoIndex geoIndex;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable notifyRunnable = this::notifyChanged;
+    private final ReportSnapshotParser parser = new ReportSnapshotParser();
+    private boolean notifyPending;
+    private final Map<String, Region> liveRegions = new HashMap<>();
+    private final LinkedHashMap<String, Region> cachedRegions =
+            new LinkedHashMap<String, Region>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Region> eldest) {
+                    return size() > MAX_CACHED_REGIONS;
+                }
+            };
+
+    public MapReportLoader(ReportGeoIndex geoIndex, Listener listener) {
+        this.geoIndex = geoIndex;
+        this.listener = listener;
+    }
+
+    /**
+     * Load the regions covering the visible bounds plus a margin. Call when the camera goes idle.
+     */
+    public void setViewport(LatLngBounds bounds) {
+        double latMargin = (bounds.northeast.latitude - bounds.southwest.latitude) * VIEWPORT_MARGIN;
+        double lngMargin = (bounds.northeast.longitude - bounds.southwest.longitude) * VIEWPORT_MARGIN;
+        List<String> cells = GeoHash.coverCells(
+                bounds.southwest.latitude - latMargin, bounds.southwest.longitude - lngMargin,
+                bounds.northeast.latitude + latMargin, bounds.northeast.longitude + lngMargin,
+                ReportGeoIndex.INDEX_PRECISION, MAX_VIEWPORT_CELLS);
+        Set<String> wanted = new HashSet<>(cells);
+
+        // Detach regions that scrolled away, keeping their last data
+        boolean changed = false;
+        for (String prefix : new HashSet<>(liveRegions.keySet())) {
+            if (!wanted.contains(prefix)) {
+                Region region = liveRegions.remove(prefix);
+                region.detach();
+                cachedRegions.put(prefix, region);
+                changed = true;
+            }
+        }
+
+        for (String prefix : cells) {
+            if (liveRegions.containsKey(prefix)) continue;
+            Region region = cachedRegions.remove(prefix);
+            if (region == null) {
+                region = new Region(prefix, geoIndex.rangeQuery(new GeoHash.Range(prefix, prefix)));
+            }
+            region.attach();
+            liveRegions.put(prefix, region);
+            changed = true;
+        }
+
+        Log.d(TAG, "Viewport cells: " + cells + " (" + cachedRegions.size() + " cached)");
+        if (changed) {
+            scheduleNotify();
+        }
+    }
+
+    /**
+     * True once every live region has received its first data or failed,
+     * so nothing more is coming until the viewport changes
+     */
+    public boolean isSettled() {
+        for (Region region : liveRegions.values()) {
+            if (!region.loaded && !region.failed) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remove every listener, call from onDestroy
+     */
+    public void detachAll() {
+        for (Region region : liveRegions.values()) {
+            region.detach();
+        }
+        liveRegions.clear();
+        cachedRegions.clear();
+        parser.cancel();
+        mainHandler.removeCallbacks(notifyRunnable);
+        notifyPending = false;
+    }
+
+    /**
+     * Coalesce a burst of child events (e.g. a region's initial load) into one notification
+     */
+    private void scheduleNotify() {
+        if (notifyPending) return;
+        notifyPending = true;
+        mainHandler.post(notifyRunnable);
+    }
+
+    private void notifyChanged() {
+        notifyPending = false;
+        // Regions at different precisions can overlap, keep one entry per report
+        Map<String, ReportGeoIndex.Entry> reports = new HashMap<>();
+        for (Region region : liveRegions.values()) {
+            region.collect(reports);
+        }
+        listener.onReportsChanged(reports.values());
+    }
+
+    /**
+     * Live listener on all index cells under one geohash prefix. Child
+     * events arrive per cell, so a change re-reads only the cell it happened in.
+     */
+    private class Region {
+        private final String prefix;
+        private final Query query;
+        // Index cell -> reports in it
+        private final Map<String, Map<String, ReportGeoIndex.Entry>> cells = new HashMap<>();
+        private final Set<String> seenSinceAttach = new HashSet<>();
+        private ChildEventListener childListener;
+        private ValueEventListener initialListener;
+        private boolean loaded;
+        // Listener cancelled, e.g. permission denied, until the next attach
+        private boolean failed;
+
+        Region(String prefix, Query query) {
+            this.prefix = prefix;
+            this.query = query;
+        }
+
+        void attach() {
+            if (childListener != null) return;
+            failed = false;
+            seenSinceAttach.clear();
+            childListener = new ChildEventListener() {
+                @Override
+                public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+                    putCell(snapshot);
+                }
+
+                @Override
+                public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+                    putCell(snapshot);
+                }
+
+                @Override
+                public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                    String cell = snapshot.getKey();
+                    // Queued behind any parse of the same cell still in flight
+                    parser.after(() -> {
+                        if (cells.remove(cell) != null) {
+                            scheduleNotify();
+                        }
+                    });
+                }
+
+                @Override
+                public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+                    // Ordered by key, cells never move
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    Log.e(TAG, "Region " + prefix + " failed: " + error.getMessage());
+                    onFailed();
+                    listener.onError(error.getMessage());
+                }
+            };
+            query.addChildEventListener(childListener);
+
+            // Fires once every initial child event has been delivered
+            initialListener = new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    initialListener = null;
+                    // Wait for the initial cells to finish parsing
+                    parser.after(() -> {
+                        // Cells emptied while this region sat in the cache
+                        cells.keySet().retainAll(seenSinceAttach);
+                        loaded = true;
+                        Log.d(TAG, "Region " + prefix + ": " + cells.size() + " cells");
+                        scheduleNotify();
+                    });
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    initialListener = null;
+                    onFailed();
+                }
+            };
+            query.addListenerForSingleValueEvent(initialListener);
+        }
+
+        /**
+         * The database dropped the listeners, so this region won't load. It
+         * counts as settled, and is attached again next time it comes into view.
+         */
+        private void onFailed() {
+            if (failed) return;
+            detach();
+            failed = true;
+            scheduleNotify();
+        }
+
+        void detach() {
+            if (childListener == null) return;
+            query.removeEventListener(childListener);
+            childListener = null;
+            if (initialListener != null) {
+                query.removeEventListener(initialListener);
+                initialListener = null;
+            }
+        }
+
+        void collect(Map<String, ReportGeoIndex.Entry> into) {
+            for (Map<String, ReportGeoIndex.Entry> cell : cells.values()) {
+                into.putAll(cell);
+            }
+        }
+
+        private void putCell(DataSnapshot snapshot) {
+            String cell = snapshot.getKey();
+            seenSinceAttach.add(cell);
+            parser.parse(snapshot, ReportGeoIndex.Entry::fromSnapshot, parsed -> {
+                Map<String, ReportGeoIndex.Entry> entries = new HashMap<>();
+                for (ReportGeoIndex.Entry entry : parsed) {
+                    entries.put(entry.getReportId(), entry);
+                }
+                cells.put(cell, entries);
+                scheduleNotify();
+            });
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.xavierproject;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Last-known map reports in a compact binary file, so the map can show
+ * markers the moment it opens while live data loads. Only what a marker
+ * needs is kept: id, position, category, status and timestamp, with
+ * categories and statuses stored once in a string table.
+ */
+public class MapSnapshotStore {
+
+    private static final String TAG = "MapSnapshotStore";
+    private static final int MAGIC = 0x52505331; // "RPS1"
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface LoadCallback {
+        /**
+         * Called on the main thread, with null if there is no usable snapshot
+         */
+        void onLoaded(Snapshot snapshot);
+    }
+
+    public MapSnapshotStore(Context context, String cityName) {
+        this.file = new File(context.getFilesDir(), "map_snapshot_" + cityName.toLowerCase().replaceAll("[^a-z0-9]", "_") + ".bin");
+    }
+
+    public void load(LoadCallback callback) {
+        executor.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            Snapshot snapshot = read();
+            if (snapshot != null) {
+                Log.d(TAG, "Read " + snapshot.reports.size() + " reports in "
+                        + (SystemClock.elapsedRealtime() - start) + " ms");
+            }
+            mainHandler.post(() -> callback.onLoaded(snapshot));
+        });
+    }
+
+    /**
+     * Replace the snapshot in the background
+     */
+    public void save(Collection<ReportGeoIndex.Entry> reports, double cameraLatitude, double cameraLongitude, float cameraZoom) {
+        final ReportGeoIndex.Entry[] copy = reports.toArray(new ReportGeoIndex.Entry[0]);
+        executor.execute(() -> write(copy, cameraLatitude, cameraLongitude, cameraZoom));
+    }
+
+    /**
+     * Finish any pending save, then stop
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private Snapshot read() {
+        if (!file.exists()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                Log.w(TAG, "Ignoring snapshot in an unknown format");
+                return null;
+            }
+            long savedAt = buffer.getLong();
+            double cameraLatitude = buffer.getDouble();
+            double cameraLongitude = buffer.getDouble();
+            float cameraZoom = buffer.getFloat();
+
+            String[] strings = new String[buffer.getShort()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+
+            int count = buffer.getInt();
+            List<ReportGeoIndex.Entry> reports = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String reportId = readString(buffer);
+                double latitude = buffer.getDouble();
+                double longitude = buffer.getDouble();
+                short category = buffer.getShort();
+                short status = buffer.getShort();
+                long timestamp = buffer.getLong();
+                reports.add(new ReportGeoIndex.Entry(reportId, null,
+                        category >= 0 ? strings[category] : null, null,
+                        status >= 0 ? strings[status] : null,
+                        latitude, longitude, timestamp));
+            }
+            return new Snapshot(reports, cameraLatitude, cameraLongitude, cameraZoom, savedAt);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            Log.e(TAG, "Error reading snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private void write(ReportGeoIndex.Entry[] reports, double cameraLatitude, double cameraLongitude, float cameraZoom) {
+        long start = SystemClock.elapsedRealtime();
+        Map<String, Short> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (ReportGeoIndex.Entry report : reports) {
+            intern(report.getCategory(), stringIds, strings);
+            intern(report.getStatus(), stringIds, strings);
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeDouble(cameraLatitude);
+            out.writeDouble(cameraLongitude);
+            out.writeFloat(cameraZoom);
+
+            out.writeShort(strings.size());
+            for (String string : strings) {
+                writeString(out, string);
+            }
+
+            out.writeInt(reports.length);
+            for (ReportGeoIndex.Entry report : reports) {
+                writeString(out, report.getReportId());
+                out.writeDouble(report.getLatitude());
+                out.writeDouble(report.getLongitude());
+                out.writeShort(idOf(report.getCategory(), stringIds));
+                out.writeShort(idOf(report.getStatus(), stringIds));
+                out.writeLong(report.getTimestamp());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing snapshot", e);
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Error replacing snapshot");
+            temp.delete();
+            return;
+        }
+        Log.d(TAG, "Saved " + reports.length + " reports (" + file.length() + " bytes) in "
+                + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    private static void intern(String value, Map<String, Short> ids, List<String> strings) {
+        // Categories and statuses are a short fixed list, stop interning rather than overflow
+        if (value == null || ids.containsKey(value) || strings.size() >= Short.MAX_VALUE) return;
+        ids.put(value, (short) strings.size());
+        strings.add(value);
+    }
+
+    private static short idOf(String value, Map<String, Short> ids) {
+        Short id = value != null ? ids.get(value) : null;
+        return id != null ? id : -1;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reports and camera position as last saved
+     */
+    public static class Snapshot {
+        private final List<ReportGeoIndex.Entry> reports;
+        private final double cameraLatitude;
+        private final double cameraLongitude;
+        private final float cameraZoom;
+        private final long savedAt;
+
+        Snapshot(List<ReportGeoIndex.Entry> reports, double cameraLatitude, double cameraLongitude,
+                 float cameraZoom, long savedAt) {
+            this.reports = reports;
+            this.cameraLatitude = cameraLatitude;
+            this.cameraLongitude = cameraLongitude;
+            this.cameraZoom = cameraZoom;
+            this.savedAt = savedAt;
+        }
+
+        public List<ReportGeoIndex.Entry> getReports() {
+            return reports;
+        }
+
+        public double getCameraLatitude() {
+            return cameraLatitude;
+        }
+
+        public double getCameraLongitude() {
+            return cameraLongitude;
+        }
+
+        public float getCameraZoom() {
+            return cameraZoom;
+        }
+
+        public long getSavedAt() {
+            return savedAt;
+        }
+    }
+}
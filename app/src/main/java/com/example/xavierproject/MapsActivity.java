@@ -1,46 +1,64 @@
 package com.example.xavierproject;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
-import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
-import com.google.android.gms.maps.model.MarkerOptions;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
+import com.google.android.gms.maps.model.TileOverlay;
+import com.google.android.gms.maps.model.TileOverlayOptions;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MapsActivity extends AppCompatActivity implements OnMapReadyCallback {
 
     private static final String TAG = "MapsActivity";
     private GoogleMap mMap;
     private String cityName;
-    private DatabaseReference reportsRef;
+    private MapReportLoader reportLoader;
+    private ReportClusterer clusterer;
+    private ReportMarkerStore markerStore;
+    private MarkerIconCache iconCache;
+    private HeatmapTileProvider heatmapProvider;
+    private TileOverlay heatmapOverlay;
+    private Collection<ReportGeoIndex.Entry> currentReports = new ArrayList<>();
     private ProgressBar progressBar;
-    private List<LatLng> reportLocations;
-    private ValueEventListener valueEventListener;
+    private boolean firstLoadReported;
+    private int clusteredZoom = -1;
+
+    // Last session's reports, shown until the live regions have loaded
+    private MapSnapshotStore snapshotStore;
+    private MapSnapshotStore.Snapshot snapshot;
+    private boolean snapshotRead;
+    private boolean snapshotDirty;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable saveSnapshotRunnable = this::saveSnapshot;
+    private long openedAt;
+    private boolean firstMarkersShown;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_maps);
-
-        // Initialize Firebase
-        reportsRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference("reports");
-        reportLocations = new ArrayList<>();
+        openedAt = SystemClock.elapsedRealtime();
 
         // Initialize progress bar
         progressBar = findViewById(R.id.progressBar);
@@ -54,13 +72,23 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
             cityName = "Mumbai";
         }
 
-        // Set up action bar with back button
+        // Set up toolbar with back button
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
         if (getSupportActionBar() != null) {
             getSupportActionBar().setTitle(cityName + " - Reports Map");
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
             getSupportActionBar().setDisplayShowHomeEnabled(true);
         }
 
+        // Read the last snapshot while the map initialises
+        snapshotStore = new MapSnapshotStore(this, cityName);
+        snapshotStore.load(loaded -> {
+            snapshot = loaded;
+            snapshotRead = true;
+            startMapIfReady();
+        });
+
         // Initialize map fragment
         SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager()
                 .findFragmentById(R.id.map);
@@ -82,182 +110,278 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         mMap.getUiSettings().setTiltGesturesEnabled(true);
         mMap.getUiSettings().setRotateGesturesEnabled(true);
 
-        // Default Mumbai location
-        LatLng defaultLocation = new LatLng(19.0760, 72.8777);
-        mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(defaultLocation, 12));
+        startMapIfReady();
+    }
+
+    /**
+     * Runs once both the map and the snapshot read are ready
+     */
+    private void startMapIfReady() {
+        if (mMap == null || !snapshotRead || reportLoader != null) {
+            return;
+        }
+
+        if (snapshot != null) {
+            // Pick up where the user left off
+            mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(
+                    new LatLng(snapshot.getCameraLatitude(), snapshot.getCameraLongitude()),
+                    snapshot.getCameraZoom()));
+        } else {
+            // Centre of the selected city, Mumbai if it isn't one we know
+            ReportCityShard.City city = ReportCityShard.find(cityName);
+            LatLng defaultLocation = city != null
+                    ? new LatLng(city.getLatitude(), city.getLongitude())
+                    : new LatLng(19.0760, 72.8777);
+            mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(defaultLocation, 12));
+        }
 
         // Load reports from Firebase
         loadReportsFromFirebase();
+
+        if (snapshot != null && !snapshot.getReports().isEmpty()) {
+            Log.d(TAG, "Showing " + snapshot.getReports().size() + " reports from the snapshot");
+            showReports(snapshot.getReports());
+            if (progressBar != null) {
+                progressBar.setVisibility(View.GONE);
+            }
+        }
     }
 
     private void loadReportsFromFirebase() {
-        Log.d(TAG, "Loading reports from Firebase...");
+        Log.d(TAG, "Loading reports in view from Firebase...");
 
-        valueEventListener = new ValueEventListener() {
+        clusterer = new ReportClusterer();
+        markerStore = new ReportMarkerStore(mMap);
+        iconCache = new MarkerIconCache(this);
+        reportLoader = new MapReportLoader(new ReportGeoIndex(), new MapReportLoader.Listener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d(TAG, "Firebase data received. Children count: " + dataSnapshot.getChildrenCount());
-
-                // Clear previous markers and locations
-                if (mMap != null) {
-                    mMap.clear();
-                }
-                reportLocations.clear();
-
-                int markerCount = 0;
-
-                // Loop through all reports
-                for (DataSnapshot reportSnapshot : dataSnapshot.getChildren()) {
-                    try {
-                        // Get report data
-                        String reportId = reportSnapshot.getKey();
-                        Double latitude = reportSnapshot.child("latitude").getValue(Double.class);
-                        Double longitude = reportSnapshot.child("longitude").getValue(Double.class);
-                        String category = reportSnapshot.child("category").getValue(String.class);
-                        String description = reportSnapshot.child("description").getValue(String.class);
-                        String status = reportSnapshot.child("status").getValue(String.class);
-                        String title = reportSnapshot.child("title").getValue(String.class);
-
-                        Log.d(TAG, "Report: " + reportId + " | Lat: " + latitude + " | Lng: " + longitude + " | Category: " + category);
-
-                        // Validate coordinates
-                        if (latitude != null && longitude != null && latitude != 0.0 && longitude != 0.0) {
-                            LatLng location = new LatLng(latitude, longitude);
-                            reportLocations.add(location);
-
-                            // Get marker color based on category
-                            float markerColor = getMarkerColorByCategory(category);
-
-                            // Create marker title
-                            String markerTitle = title != null ? title : (category != null ? category : "Report");
-
-                            // Create snippet
-                            String snippet = "";
-                            if (status != null && !status.isEmpty()) {
-                                snippet = "Status: " + status;
-                            }
-                            if (description != null && !description.isEmpty()) {
-                                if (!snippet.isEmpty()) {
-                                    snippet += "\n";
-                                }
-                                snippet += description.length() > 50 ?
-                                        description.substring(0, 50) + "..." : description;
-                            }
-                            if (snippet.isEmpty()) {
-                                snippet = "No description";
-                            }
-
-                            // Add marker to map
-                            MarkerOptions markerOptions = new MarkerOptions()
-                                    .position(location)
-                                    .title(markerTitle)
-                                    .snippet(snippet)
-                                    .icon(BitmapDescriptorFactory.defaultMarker(markerColor));
-
-                            mMap.addMarker(markerOptions);
-                            markerCount++;
-                            Log.d(TAG, "Marker added: " + markerTitle + " at " + latitude + ", " + longitude);
-                        } else {
-                            Log.w(TAG, "Invalid coordinates for report: " + reportId);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error processing report", e);
-                        e.printStackTrace();
+            public void onReportsChanged(Collection<ReportGeoIndex.Entry> reports) {
+                if (reportLoader.isSettled()) {
+                    snapshot = null;
+                    scheduleSnapshotSave();
+                } else if (snapshot != null) {
+                    // Some regions are still loading, keep the snapshot's reports until they arrive or fail
+                    Map<String, ReportGeoIndex.Entry> merged = new HashMap<>();
+                    for (ReportGeoIndex.Entry entry : snapshot.getReports()) {
+                        merged.put(entry.getReportId(), entry);
                     }
+                    for (ReportGeoIndex.Entry entry : reports) {
+                        merged.put(entry.getReportId(), entry);
+                    }
+                    reports = merged.values();
                 }
+                showReports(reports);
+                onReportsLoaded(reports.size());
+            }
 
+            @Override
+            public void onError(String error) {
+                Log.e(TAG, "Firebase error: " + error);
                 if (progressBar != null) {
                     progressBar.setVisibility(View.GONE);
                 }
+                Toast.makeText(MapsActivity.this,
+                        "Failed to load reports: " + error,
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+
+        // Only the reports around the visible area are downloaded, reload whenever the user stops moving
+        mMap.setOnCameraIdleListener(() -> {
+            reportLoader.setViewport(mMap.getProjection().getVisibleRegion().latLngBounds);
+            if (heatmapOverlay == null && (int) mMap.getCameraPosition().zoom != clusteredZoom) {
+                requestClusters();
+            }
+        });
 
-                Log.d(TAG, "Total markers added: " + markerCount);
+        // Tapping a cluster zooms in until it splits up
+        mMap.setOnMarkerClickListener(marker -> {
+            if (!(marker.getTag() instanceof ReportClusterer.Cluster)) {
+                return false;
+            }
+            zoomIntoCluster((ReportClusterer.Cluster) marker.getTag());
+            return true;
+        });
+    }
 
-                // Show count of markers
-                if (markerCount > 0) {
-                    Toast.makeText(MapsActivity.this, markerCount + " reports loaded", Toast.LENGTH_SHORT).show();
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_maps, menu);
+        return true;
+    }
 
-                    // Adjust camera to show all markers
-                    adjustCameraToMarkers();
-                } else {
-                    Log.w(TAG, "No valid report locations found");
-                    Toast.makeText(MapsActivity.this, "No reports found", Toast.LENGTH_SHORT).show();
-                }
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_heatmap) {
+            if (reportLoader == null) {
+                return true;
             }
+            item.setChecked(!item.isChecked());
+            setHeatmapMode(item.isChecked());
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                Log.e(TAG, "Firebase error: " + databaseError.getMessage());
-                if (progressBar != null) {
-                    progressBar.setVisibility(View.GONE);
-                }
-                Toast.makeText(MapsActivity.this,
-                        "Failed to load reports: " + databaseError.getMessage(),
-                        Toast.LENGTH_SHORT).show();
+    /**
+     * Switch between clustered markers and the density heatmap
+     */
+    private void setHeatmapMode(boolean enabled) {
+        if (enabled == (heatmapOverlay != null)) {
+            return;
+        }
+        if (enabled) {
+            markerStore.clear();
+            clusteredZoom = -1;
+            if (heatmapProvider == null) {
+                heatmapProvider = new HeatmapTileProvider(this);
             }
-        };
+            heatmapOverlay = mMap.addTileOverlay(new TileOverlayOptions()
+                    .tileProvider(heatmapProvider)
+                    .fadeIn(false));
+            updateHeatmap();
+        } else {
+            heatmapOverlay.remove();
+            heatmapOverlay = null;
+            clusterer.setReports(currentReports);
+            requestClusters();
+        }
+    }
 
-        reportsRef.addValueEventListener(valueEventListener);
+    private void updateHeatmap() {
+        heatmapProvider.setReports(currentReports, () -> {
+            // Unchanged tiles come straight back from the provider's cache
+            if (heatmapOverlay != null) {
+                heatmapOverlay.clearTileCache();
+            }
+        });
     }
 
-    // Get marker color based on category
-    private float getMarkerColorByCategory(String category) {
-        if (category == null) {
-            return BitmapDescriptorFactory.HUE_RED;
+    private void showReports(Collection<ReportGeoIndex.Entry> reports) {
+        currentReports = reports;
+        if (heatmapOverlay != null) {
+            updateHeatmap();
+        } else {
+            clusterer.setReports(reports);
+            requestClusters();
         }
+    }
 
-        switch (category.toLowerCase().trim()) {
-            case "road":
-                return BitmapDescriptorFactory.HUE_ORANGE;
-            case "water":
-                return BitmapDescriptorFactory.HUE_AZURE;
-            case "electricity":
-                return BitmapDescriptorFactory.HUE_YELLOW;
-            case "waste":
-                return BitmapDescriptorFactory.HUE_GREEN;
-            case "safety":
-                return BitmapDescriptorFactory.HUE_RED;
-            case "public transport":
-                return BitmapDescriptorFactory.HUE_VIOLET;
-            case "infrastructure":
-                return BitmapDescriptorFactory.HUE_ROSE;
-            case "health":
-                return BitmapDescriptorFactory.HUE_MAGENTA;
-            default:
-                return BitmapDescriptorFactory.HUE_RED;
+    /**
+     * Save the loaded reports a little after the last change, so bursts write once
+     */
+    private void scheduleSnapshotSave() {
+        snapshotDirty = true;
+        mainHandler.removeCallbacks(saveSnapshotRunnable);
+        mainHandler.postDelayed(saveSnapshotRunnable, 2000);
+    }
+
+    private void saveSnapshot() {
+        mainHandler.removeCallbacks(saveSnapshotRunnable);
+        if (!snapshotDirty || mMap == null) {
+            return;
         }
+        snapshotDirty = false;
+        CameraPosition camera = mMap.getCameraPosition();
+        snapshotStore.save(currentReports, camera.target.latitude, camera.target.longitude, camera.zoom);
     }
 
-    private void adjustCameraToMarkers() {
-        if (reportLocations.isEmpty() || mMap == null) {
+    private void requestClusters() {
+        if (mMap == null || clusterer == null) {
             return;
         }
+        clusterer.cluster(mMap.getCameraPosition().zoom, (clusters, zoom) -> {
+            if (heatmapOverlay != null) {
+                return;
+            }
+            clusteredZoom = zoom;
+            showClusters(clusters);
+        });
+    }
 
-        // Delay camera animation to ensure map is ready
-        mMap.setOnMapLoadedCallback(() -> {
-            try {
-                if (reportLocations.size() == 1) {
-                    // If only one marker, zoom to it
-                    mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(reportLocations.get(0), 15));
-                } else {
-                    // If multiple markers, fit all in view
-                    LatLngBounds.Builder builder = new LatLngBounds.Builder();
-                    for (LatLng location : reportLocations) {
-                        builder.include(location);
-                    }
-                    LatLngBounds bounds = builder.build();
+    private void showClusters(List<ReportClusterer.Cluster> clusters) {
+        if (mMap == null) {
+            return;
+        }
 
-                    // Add padding (150 pixels) and animate camera
-                    int padding = 150;
-                    mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds, padding), 1500, null);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error adjusting camera", e);
-                // Fallback: center on first marker
-                if (!reportLocations.isEmpty()) {
-                    mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(reportLocations.get(0), 12));
-                }
+        // Only markers that actually changed are touched, the camera stays where the user left it
+        List<ReportMarkerStore.Spec> specs = new ArrayList<>(clusters.size());
+        for (ReportClusterer.Cluster cluster : clusters) {
+            ReportGeoIndex.Entry report = cluster.getSingleReport();
+            if (report != null) {
+                specs.add(reportMarkerSpec(report));
+            } else {
+                specs.add(new ReportMarkerStore.Spec(cluster.getKey(),
+                        new LatLng(cluster.getLatitude(), cluster.getLongitude()),
+                        cluster.getCount() + " reports",
+                        cluster.describeCategories(),
+                        MarkerIconCache.clusterKey(cluster.getCount()),
+                        iconCache.clusterIcon(cluster.getCount()),
+                        cluster));
             }
-        });
+        }
+        markerStore.apply(specs);
+
+        if (!firstMarkersShown && !specs.isEmpty()) {
+            firstMarkersShown = true;
+            Log.d(TAG, "First markers shown " + (SystemClock.elapsedRealtime() - openedAt) + " ms after opening");
+        }
+    }
+
+    private void zoomIntoCluster(ReportClusterer.Cluster cluster) {
+        double[] bounds = cluster.getBounds();
+        LatLng southwest = new LatLng(bounds[0], bounds[1]);
+        LatLng northeast = new LatLng(bounds[2], bounds[3]);
+        if (southwest.equals(northeast)) {
+            // Reports at the same spot, zoom in a couple of levels instead
+            mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(southwest, mMap.getCameraPosition().zoom + 2));
+        } else {
+            mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(new LatLngBounds(southwest, northeast), 150));
+        }
+    }
+
+    private void onReportsLoaded(int reportCount) {
+        if (!reportLoader.isSettled()) {
+            return;
+        }
+        if (progressBar != null) {
+            progressBar.setVisibility(View.GONE);
+        }
+        if (!firstLoadReported) {
+            firstLoadReported = true;
+            Toast.makeText(MapsActivity.this,
+                    reportCount > 0 ? reportCount + " reports in this area" : "No reports in this area",
+                    Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private ReportMarkerStore.Spec reportMarkerSpec(ReportGeoIndex.Entry report) {
+        LatLng location = new LatLng(report.getLatitude(), report.getLongitude());
+        String category = report.getCategory();
+        String status = report.getStatus();
+        String description = report.getDescription();
+
+        // Create marker title
+        String markerTitle = report.getTitle() != null ? report.getTitle() : (category != null ? category : "Report");
+
+        // Create snippet
+        String snippet = "";
+        if (status != null && !status.isEmpty()) {
+            snippet = "Status: " + status;
+        }
+        if (description != null && !description.isEmpty()) {
+            if (!snippet.isEmpty()) {
+                snippet += "\n";
+            }
+            snippet += description;
+        }
+        if (snippet.isEmpty()) {
+            snippet = "No description";
+        }
+
+        // Icon shows category and status, drawn once per combination
+        return new ReportMarkerStore.Spec(report.getReportId(), location, markerTitle, snippet,
+                MarkerIconCache.reportKey(category, status), iconCache.reportIcon(category, status), report);
     }
 
     @Override
@@ -272,12 +396,29 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         finish();
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        saveSnapshot();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Remove Firebase listener to prevent memory leaks
-        if (reportsRef != null && valueEventListener != null) {
-            reportsRef.removeEventListener(valueEventListener);
+        mainHandler.removeCallbacks(saveSnapshotRunnable);
+        snapshotStore.shutdown();
+        // Remove Firebase listeners to prevent memory leaks
+        if (reportLoader != null) {
+            reportLoader.detachAll();
+        }
+        if (clusterer != null) {
+            clusterer.shutdown();
+        }
+        if (markerStore != null) {
+            markerStore.clear();
+        }
+        if (heatmapProvider != null) {
+            heatmapProvider.shutdown();
         }
     }
 }
@@ -0,0 +1,192 @@
+package com.example.xavierproject;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Marker icons for the reports map, drawn once and reused. Report icons
+ * show the category as the fill and the status as the ring; cluster icons
+ * show a count badge, one icon per count bucket rather than per count.
+ * Must be used after the map is ready, on the main thread.
+ */
+public class MarkerIconCache {
+
+    private static final int REPORT_ICON_DP = 28;
+    private static final int RING_DP = 4;
+    private static final int[] CLUSTER_BUCKETS = {10, 20, 50, 100, 200, 500, 1000};
+
+    private final Context context;
+    private final float density;
+    private final Map<String, BitmapDescriptor> icons = new HashMap<>();
+
+    public MarkerIconCache(Context context) {
+        this.context = context.getApplicationContext();
+        this.density = context.getResources().getDisplayMetrics().density;
+    }
+
+    /**
+     * Cache key of a report's icon, markers only need a new icon when this changes
+     */
+    public static String reportKey(String category, String status) {
+        return "report/" + normalize(category) + "/" + normalize(status);
+    }
+
+    /**
+     * Cache key of a cluster's icon
+     */
+    public static String clusterKey(int count) {
+        return "cluster/" + bucketLabel(count);
+    }
+
+    public BitmapDescriptor reportIcon(String category, String status) {
+        String key = reportKey(category, status);
+        BitmapDescriptor icon = icons.get(key);
+        if (icon == null) {
+            icon = BitmapDescriptorFactory.fromBitmap(drawReport(category, status));
+            icons.put(key, icon);
+        }
+        return icon;
+    }
+
+    public BitmapDescriptor clusterIcon(int count) {
+        String key = clusterKey(count);
+        BitmapDescriptor icon = icons.get(key);
+        if (icon == null) {
+            icon = BitmapDescriptorFactory.fromBitmap(drawCluster(count));
+            icons.put(key, icon);
+        }
+        return icon;
+    }
+
+    public void clear() {
+        icons.clear();
+    }
+
+    /**
+     * Marker hue for a category, also used for the icon fill
+     */
+    public static float categoryHue(String category) {
+        switch (normalize(category)) {
+            case "road":
+                return BitmapDescriptorFactory.HUE_ORANGE;
+            case "water":
+                return BitmapDescriptorFactory.HUE_AZURE;
+            case "garbage":
+                return BitmapDescriptorFactory.HUE_MAGENTA;
+            case "streetlight":
+                return BitmapDescriptorFactory.HUE_YELLOW;
+            case "drainage":
+                return BitmapDescriptorFactory.HUE_CYAN;
+            case "electricity":
+                return BitmapDescriptorFactory.HUE_RED;
+            case "park":
+                return BitmapDescriptorFactory.HUE_GREEN;
+            case "public property":
+                return BitmapDescriptorFactory.HUE_VIOLET;
+            case "other":
+            default:
+                return BitmapDescriptorFactory.HUE_BLUE;
+        }
+    }
+
+    private int statusColor(String status) {
+        switch (normalize(status)) {
+            case "pending":
+                return ContextCompat.getColor(context, R.color.status_pending);
+            case "acknowledged":
+                return ContextCompat.getColor(context, R.color.accent);
+            case "ongoing":
+                return ContextCompat.getColor(context, R.color.status_in_progress);
+            case "resolved":
+                return ContextCompat.getColor(context, R.color.status_resolved);
+            default:
+                return Color.GRAY;
+        }
+    }
+
+    private Bitmap drawReport(String category, String status) {
+        int size = Math.round(REPORT_ICON_DP * density);
+        float ring = RING_DP * density;
+        float center = size / 2f;
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        paint.setColor(Color.WHITE);
+        canvas.drawCircle(center, center, center, paint);
+        paint.setColor(statusColor(status));
+        canvas.drawCircle(center, center, center - density, paint);
+        paint.setColor(Color.HSVToColor(new float[]{categoryHue(category), 0.9f, 0.95f}));
+        canvas.drawCircle(center, center, center - density - ring, paint);
+
+        // Resolved reports fade into the background
+        if ("resolved".equals(normalize(status))) {
+            Bitmap faded = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            Paint alpha = new Paint();
+            alpha.setAlpha(140);
+            new Canvas(faded).drawBitmap(bitmap, 0, 0, alpha);
+            bitmap.recycle();
+            return faded;
+        }
+        return bitmap;
+    }
+
+    private Bitmap drawCluster(int count) {
+        int bucket = bucketIndex(count);
+        // Bigger and hotter as the bucket grows
+        int size = Math.round((34 + 4 * Math.max(0, bucket)) * density);
+        float center = size / 2f;
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        float hue = 200 - 200f * (bucket + 1) / CLUSTER_BUCKETS.length;
+        paint.setColor(Color.HSVToColor(90, new float[]{Math.max(0, hue), 0.85f, 0.9f}));
+        canvas.drawCircle(center, center, center, paint);
+        paint.setColor(Color.HSVToColor(new float[]{Math.max(0, hue), 0.85f, 0.9f}));
+        canvas.drawCircle(center, center, center * 0.75f, paint);
+
+        paint.setColor(Color.WHITE);
+        paint.setTypeface(Typeface.DEFAULT_BOLD);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTextSize(13 * density);
+        Paint.FontMetrics metrics = paint.getFontMetrics();
+        canvas.drawText(bucketLabel(count), center, center - (metrics.ascent + metrics.descent) / 2, paint);
+        return bitmap;
+    }
+
+    /**
+     * Index of the largest bucket the count reaches, -1 below the first
+     */
+    private static int bucketIndex(int count) {
+        int index = -1;
+        for (int i = 0; i < CLUSTER_BUCKETS.length; i++) {
+            if (count >= CLUSTER_BUCKETS[i]) index = i;
+        }
+        return index;
+    }
+
+    /**
+     * Exact count below 10, otherwise the bucket, e.g. "50+"
+     */
+    private static String bucketLabel(int count) {
+        int index = bucketIndex(count);
+        return index < 0 ? String.valueOf(count) : CLUSTER_BUCKETS[index] + "+";
+    }
+
+    private static String normalize(String value) {
+        return value != null ? value.toLowerCase().trim() : "";
+    }
+}
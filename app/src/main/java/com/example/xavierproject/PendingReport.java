@@ -0,0 +1,291 @@
+package com.example.xavierproject;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A complaint waiting in the outbox, journaled with everything needed
+ * to upload its image and write it to Firebase without the form.
+ */
+public class PendingReport {
+
+    private String reportId; // Pre-allocated push() key, so retries overwrite the same node
+    private String userId;
+    private String title;
+    private String category;
+    private String description;
+    private boolean hasLocation;
+    private double latitude;
+    private double longitude;
+    private float accuracy;
+    private long timestamp;
+
+    private List<Image> images = new ArrayList<>();
+    private int attempts;
+
+    public PendingReport() {
+    }
+
+    public PendingReport(String reportId, String userId, String title, String category, String description) {
+        this.reportId = reportId;
+        this.userId = userId;
+        this.title = title;
+        this.category = category;
+        this.description = description;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Build the multi-path update that writes this report in one atomic call
+     */
+    public Map<String, Object> toUpdates() {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("reports/" + reportId, toReportData());
+        if (hasLocation) {
+            updates.put(ReportGeoIndex.entryPath(ReportGeoIndex.cellOf(latitude, longitude), reportId),
+                    ReportGeoIndex.entryData(title, category, description, "pending",
+                            latitude, longitude, timestamp));
+        }
+        // Reports without a location still need a queue entry, they go to the "other" shard
+        Image cover = images.isEmpty() ? null : images.get(0);
+        updates.put(ReportCityShard.entryPath(cityKey(), reportId),
+                ReportCityShard.entryData(userId, title, category, description, "pending",
+                        cover != null ? cover.url : null, hasLocation ? latitude : 0, hasLocation ? longitude : 0,
+                        timestamp));
+        return updates;
+    }
+
+    /**
+     * Build the record written under reports/{reportId}
+     */
+    public Map<String, Object> toReportData() {
+        Map<String, Object> reportData = new HashMap<>();
+        reportData.put("reportId", reportId);
+        reportData.put("userId", userId);
+        reportData.put("title", title);
+        reportData.put("category", category);
+        reportData.put("description", description);
+
+        // The first photo stays in the single-image fields older readers use
+        Image cover = images.isEmpty() ? null : images.get(0);
+        String coverPublicId = cover != null ? cover.publicId : null;
+        reportData.put("imageUrl", cover != null ? cover.url : null);
+        reportData.put("imagePublicId", coverPublicId);
+        reportData.put("thumbnailUrl", CloudinaryHelper.getThumbnailUrl(coverPublicId));
+
+        List<Map<String, Object>> imageList = new ArrayList<>();
+        for (Image image : images) {
+            Map<String, Object> imageData = new HashMap<>();
+            imageData.put("url", image.url);
+            imageData.put("publicId", image.publicId);
+            imageData.put("thumbnailUrl", CloudinaryHelper.getThumbnailUrl(image.publicId));
+            imageList.add(imageData);
+        }
+        reportData.put("images", imageList);
+        reportData.put("timestamp", timestamp);
+        reportData.put("status", "pending");
+
+        // Add location data
+        if (hasLocation) {
+            Map<String, Object> locationData = new HashMap<>();
+            locationData.put("latitude", latitude);
+            locationData.put("longitude", longitude);
+            locationData.put("accuracy", accuracy);
+            reportData.put("location", locationData);
+            // Lets status updates find the report's index entry
+            reportData.put("geohash", ReportGeoIndex.cellOf(latitude, longitude));
+        }
+        // Lets status updates find the report's shard entry
+        reportData.put("city", cityKey());
+        return reportData;
+    }
+
+    private String cityKey() {
+        return hasLocation ? ReportCityShard.keyFor(latitude, longitude) : ReportCityShard.OTHER_KEY;
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject object = new JSONObject();
+        object.put("reportId", reportId);
+        object.put("userId", userId);
+        object.put("title", title);
+        object.put("category", category);
+        object.put("description", description);
+        object.put("hasLocation", hasLocation);
+        object.put("latitude", latitude);
+        object.put("longitude", longitude);
+        object.put("accuracy", (double) accuracy);
+        object.put("timestamp", timestamp);
+        JSONArray imageArray = new JSONArray();
+        for (Image image : images) {
+            imageArray.put(image.toJson());
+        }
+        object.put("images", imageArray);
+        object.put("attempts", attempts);
+        return object;
+    }
+
+    public static PendingReport fromJson(JSONObject object) throws JSONException {
+        PendingReport report = new PendingReport();
+        report.reportId = object.getString("reportId");
+        report.userId = object.optString("userId", "anonymous");
+        report.title = object.optString("title");
+        report.category = object.optString("category");
+        report.description = object.optString("description");
+        report.hasLocation = object.optBoolean("hasLocation", false);
+        report.latitude = object.optDouble("latitude", 0);
+        report.longitude = object.optDouble("longitude", 0);
+        report.accuracy = (float) object.optDouble("accuracy", 0);
+        report.timestamp = object.optLong("timestamp", System.currentTimeMillis());
+        JSONArray imageArray = object.optJSONArray("images");
+        if (imageArray != null) {
+            for (int i = 0; i < imageArray.length(); i++) {
+                report.images.add(Image.fromJson(imageArray.getJSONObject(i)));
+            }
+        } else if (object.has("imagePath")) {
+            // Entry journaled before reports had several photos
+            Image image = new Image(null, optNullableString(object, "imagePath"));
+            image.setUploaded(optNullableString(object, "imageUrl"), optNullableString(object, "imagePublicId"));
+            report.images.add(image);
+        }
+        report.attempts = object.optInt("attempts", 0);
+        return report;
+    }
+
+    private static String optNullableString(JSONObject object, String name) {
+        return object.isNull(name) ? null : object.optString(name, null);
+    }
+
+    public boolean areImagesUploaded() {
+        for (Image image : images) {
+            if (!image.isUploaded()) return false;
+        }
+        return true;
+    }
+
+    // Getters
+    public String getReportId() {
+        return reportId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean hasLocation() {
+        return hasLocation;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<Image> getImages() {
+        return images;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    // Setters
+    public void setLocation(double latitude, double longitude, float accuracy) {
+        this.hasLocation = true;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+    }
+
+    public void addImage(Image image) {
+        this.images.add(image);
+    }
+
+    public void removeImage(Image image) {
+        this.images.remove(image);
+    }
+
+    public void incrementAttempts() {
+        this.attempts++;
+    }
+
+    /**
+     * One photo of the report, journaled with its local copy and upload result
+     */
+    public static class Image {
+        private final String sourceUri; // URI the user picked, matches a prefetched upload
+        private final String path;
+        private String url;
+        private String publicId;
+
+        public Image(String sourceUri, String path) {
+            this.sourceUri = sourceUri;
+            this.path = path;
+        }
+
+        public boolean isUploaded() {
+            return url != null && publicId != null;
+        }
+
+        public String getSourceUri() {
+            return sourceUri;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getPublicId() {
+            return publicId;
+        }
+
+        public void setUploaded(String url, String publicId) {
+            this.url = url;
+            this.publicId = publicId;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject object = new JSONObject();
+            object.put("sourceUri", sourceUri);
+            object.put("path", path);
+            object.put("url", url);
+            object.put("publicId", publicId);
+            return object;
+        }
+
+        static Image fromJson(JSONObject object) {
+            Image image = new Image(optNullableString(object, "sourceUri"), optNullableString(object, "path"));
+            image.setUploaded(optNullableString(object, "url"), optNullableString(object, "publicId"));
+            return image;
+        }
+    }
+}
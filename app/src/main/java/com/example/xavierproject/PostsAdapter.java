@@ -18,28 +18,48 @@ import com.google.android.material.chip.Chip;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public class PostsAdapter extends RecyclerView.Adapter<PostsAdapter.PostViewHolder> {
 
     private Context context;
-    private List<Post> posts;
+    private final KeyedListDiffer<Post> posts;
     private FirebaseUser currentUser;
     private DatabaseReference postsRef;
 
     public PostsAdapter(Context context, FirebaseUser currentUser) {
         this.context = context;
-        this.posts = new ArrayList<>();
         this.currentUser = currentUser;
+        this.posts = new KeyedListDiffer<>(this, Post::getPostId, this::sameContents);
         this.postsRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference("posts");
     }
 
+    /**
+     * Show a new list, rebinding only the posts that changed
+     */
     public void setPosts(List<Post> posts) {
-        this.posts = posts;
-        notifyDataSetChanged();
+        this.posts.submit(posts);
+    }
+
+    /**
+     * Everything a row shows. Of the upvotes and bookmarks, only the count
+     * and the current user's own are shown, so only those are compared.
+     */
+    private boolean sameContents(Post a, Post b) {
+        String uid = currentUser != null ? currentUser.getUid() : null;
+        return Objects.equals(a.getUserId(), b.getUserId())
+                && Objects.equals(a.getUserName(), b.getUserName())
+                && Objects.equals(a.getContent(), b.getContent())
+                && a.getTimestamp() == b.getTimestamp()
+                && a.getUpvotes() == b.getUpvotes()
+                && a.getCommentsCount() == b.getCommentsCount()
+                && a.isPinned() == b.isPinned()
+                && a.getCategory().equals(b.getCategory())
+                && a.getUpvotedBy().containsKey(uid) == b.getUpvotedBy().containsKey(uid)
+                && a.getBookmarkedBy().containsKey(uid) == b.getBookmarkedBy().containsKey(uid);
     }
 
     @NonNull
@@ -116,7 +136,7 @@ public class PostsAdapter extends RecyclerView.Adapter<PostsAdapter.PostViewHold
         holder.shareButton.setOnClickListener(v -> sharePost(post));
 
         // More options button
-        holder.moreButton.setOnClickListener(v -> showMoreOptions(post, position));
+        holder.moreButton.setOnClickListener(v -> showMoreOptions(post));
 
         // Card click - open comments
         holder.cardView.setOnClickListener(v -> {
@@ -194,7 +214,7 @@ public class PostsAdapter extends RecyclerView.Adapter<PostsAdapter.PostViewHold
         context.startActivity(Intent.createChooser(shareIntent, "Share post via"));
     }
 
-    private void showMoreOptions(Post post, int position) {
+    private void showMoreOptions(Post post) {
         String[] options;
 
         if (currentUser != null && post.getUserId().equals(currentUser.getUid())) {
@@ -207,7 +227,7 @@ public class PostsAdapter extends RecyclerView.Adapter<PostsAdapter.PostViewHold
                 .setTitle("Post Options")
                 .setItems(options, (dialog, which) -> {
                     if (options[which].equals("Delete Post")) {
-                        deletePost(post, position);
+                        deletePost(post);
                     } else if (options[which].equals("Complaint Post")) {
                         Toast.makeText(context, "Post reported", Toast.LENGTH_SHORT).show();
                     }
@@ -215,15 +235,14 @@ public class PostsAdapter extends RecyclerView.Adapter<PostsAdapter.PostViewHold
                 .show();
     }
 
-    private void deletePost(Post post, int position) {
+    private void deletePost(Post post) {
         new AlertDialog.Builder(context)
                 .setTitle("Delete Post")
                 .setMessage("Are you sure you want to delete this post?")
                 .setPositiveButton("Delete", (dialog, which) -> {
                     postsRef.child(post.getPostId()).removeValue()
                             .addOnSuccessListener(aVoid -> {
-                                posts.remove(position);
-                                notifyItemRemoved(position);
+                                posts.remove(post);
                                 Toast.makeText(context, "Post deleted", Toast.LENGTH_SHORT).show();
                             })
                             .addOnFailureListener(e -> {
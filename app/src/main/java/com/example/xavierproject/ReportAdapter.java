@@ -16,17 +16,40 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 public class ReportAdapter extends RecyclerView.Adapter<ReportAdapter.ReportViewHolder> {
 
-    private List<Complaint> reportList;
+    private final KeyedListDiffer<Complaint> reportList;
     private Context context;
 
-    public ReportAdapter(List<Complaint> reportList, Context context) {
-        this.reportList = reportList;
+    public ReportAdapter(Context context) {
+        this.reportList = new KeyedListDiffer<>(this, Complaint::getReportId, ReportAdapter::sameContents);
         this.context = context;
     }
 
+    /**
+     * Show a new list, rebinding only the reports that changed
+     */
+    public void setReports(List<Complaint> reports) {
+        reportList.submit(reports);
+    }
+
+    /**
+     * Everything a row shows
+     */
+    private static boolean sameContents(Complaint a, Complaint b) {
+        return Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getCategory(), b.getCategory())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && Objects.equals(a.getImageUrl(), b.getImageUrl())
+                && (a.getLocation() == null) == (b.getLocation() == null)
+                && a.getTimestamp() == b.getTimestamp()
+                && a.getLatitude() == b.getLatitude()
+                && a.getLongitude() == b.getLongitude();
+    }
+
     @NonNull
     @Override
     public ReportViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -0,0 +1,194 @@
+package com.example.xavierproject;
+
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-city copy of the complaint queue under reports_by_city/{city}/{reportId}.
+ * The city comes from the report's location when it is submitted, so
+ * officials only download the city they picked. reports/{reportId} stays
+ * the full record every other screen reads. Entries also carry composite
+ * keys such as "pending_drainage_001718000000000", so each queue filter is
+ * one range query on a single child (see ComplaintFilter).
+ */
+public class ReportCityShard {
+
+    public static final String SHARD_NODE = "reports_by_city";
+    // Shard for reports that aren't in any supported city, or have no location
+    public static final String OTHER_KEY = "other";
+    // How the other shard is offered in the complaint queue's city picker
+    public static final String OTHER_NAME = "Other areas";
+
+    // Composite keys written on every entry, kept in step with the status
+    public static final String STATUS_TIMESTAMP = "status_timestamp";
+    public static final String CATEGORY_TIMESTAMP = "category_timestamp";
+    public static final String STATUS_CATEGORY_TIMESTAMP = "status_category_timestamp";
+
+    /**
+     * Cities offered in the city pickers, with the area each one covers
+     */
+    public static final City[] CITIES = {
+            new City("Mumbai", 19.0760, 72.8777, 50),
+            new City("Delhi", 28.6139, 77.2090, 50),
+            new City("Bangalore", 12.9716, 77.5946, 40),
+            new City("Hyderabad", 17.3850, 78.4867, 40),
+            new City("Chennai", 13.0827, 80.2707, 40),
+            new City("Kolkata", 22.5726, 88.3639, 40),
+            new City("Pune", 18.5204, 73.8567, 35),
+            new City("Ahmedabad", 23.0225, 72.5714, 35),
+    };
+
+    public static String[] cityNames() {
+        String[] names = new String[CITIES.length];
+        for (int i = 0; i < CITIES.length; i++) {
+            names[i] = CITIES[i].getName();
+        }
+        return names;
+    }
+
+    /**
+     * Choices for the complaint queue's city picker: every city, then OTHER_NAME
+     */
+    public static String[] queueNames() {
+        String[] cities = cityNames();
+        String[] names = new String[cities.length + 1];
+        System.arraycopy(cities, 0, names, 0, cities.length);
+        names[cities.length] = OTHER_NAME;
+        return names;
+    }
+
+    /**
+     * City by name, or null if it isn't supported
+     */
+    public static City find(String name) {
+        for (City city : CITIES) {
+            if (city.getName().equalsIgnoreCase(name)) return city;
+        }
+        return null;
+    }
+
+    /**
+     * Shard key for a location: the closest city covering it, or OTHER_KEY
+     */
+    public static String keyFor(double latitude, double longitude) {
+        City closest = null;
+        double closestDistance = Double.MAX_VALUE;
+        for (City city : CITIES) {
+            double distance = GeoHash.distanceMeters(latitude, longitude, city.getLatitude(), city.getLongitude());
+            if (distance <= city.getRadiusKm() * 1000 && distance < closestDistance) {
+                closest = city;
+                closestDistance = distance;
+            }
+        }
+        return closest != null ? closest.getKey() : OTHER_KEY;
+    }
+
+    /**
+     * Path of a report's shard entry, relative to the database root
+     */
+    public static String entryPath(String cityKey, String reportId) {
+        return SHARD_NODE + "/" + cityKey + "/" + reportId;
+    }
+
+    /**
+     * What the complaint queue needs to list a report and open its detail screen
+     */
+    public static Map<String, Object> entryData(String userId, String title, String category, String description,
+                                                String status, String imageUrl, double latitude, double longitude,
+                                                long timestamp) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("userId", userId);
+        entry.put("title", title);
+        entry.put("category", category);
+        entry.put("description", description);
+        entry.put("status", status);
+        entry.put("imageUrl", imageUrl);
+        entry.put("latitude", latitude);
+        entry.put("longitude", longitude);
+        entry.put("timestamp", timestamp);
+        entry.putAll(queueKeys(status, category, timestamp));
+        return entry;
+    }
+
+    /**
+     * Composite keys of an entry, by child name. Only the status ones change
+     * when a report's status does.
+     */
+    public static Map<String, Object> queueKeys(String status, String category, long timestamp) {
+        String time = timeKey(timestamp);
+        Map<String, Object> keys = new HashMap<>();
+        keys.put(STATUS_TIMESTAMP, statusPart(status) + "_" + time);
+        keys.put(CATEGORY_TIMESTAMP, categoryPart(category) + "_" + time);
+        keys.put(STATUS_CATEGORY_TIMESTAMP, statusPart(status) + "_" + categoryPart(category) + "_" + time);
+        return keys;
+    }
+
+    /**
+     * Status as it appears in composite keys, e.g. "in progress" becomes "in-progress"
+     */
+    public static String statusPart(String status) {
+        return keyPart(status != null ? status : "pending");
+    }
+
+    public static String categoryPart(String category) {
+        return keyPart(category != null ? category : "Other");
+    }
+
+    /**
+     * Zero padded, so keys sort by time as strings
+     */
+    public static String timeKey(long timestamp) {
+        return String.format(Locale.US, "%015d", Math.max(0, timestamp));
+    }
+
+    // No underscores, they separate the parts of a key
+    private static String keyPart(String value) {
+        return value.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-");
+    }
+
+    public static DatabaseReference shardRef(String cityKey) {
+        return FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app")
+                .getReference(SHARD_NODE).child(cityKey);
+    }
+
+    public static class City {
+        private final String name;
+        private final double latitude;
+        private final double longitude;
+        private final double radiusKm;
+
+        City(String name, double latitude, double longitude, double radiusKm) {
+            this.name = name;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusKm = radiusKm;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Database key of the city's shard
+         */
+        public String getKey() {
+            return name.toLowerCase();
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public double getRadiusKm() {
+            return radiusKm;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.xavierproject;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups map reports into clusters on a background thread. Reports are
+ * bucketed on a screen-space grid for the current zoom level; grid cells
+ * halve with every zoom level, so each cluster splits cleanly into the
+ * clusters of the next level as the user zooms in.
+ */
+public class ReportClusterer {
+
+    private static final String TAG = "ReportClusterer";
+
+    // Size of a grid cell on screen, in map pixels
+    private static final int CLUSTER_CELL_PX = 80;
+    // From this zoom level on, every report gets its own marker
+    private static final int MAX_CLUSTER_ZOOM = 17;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // Only touched on the executor thread
+    private ReportGeoIndex.Entry[] reports = new ReportGeoIndex.Entry[0];
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+
+    public interface Callback {
+        /**
+         * Called on the main thread with the clusters of the latest request only
+         */
+        void onClustered(List<Cluster> clusters, int zoom);
+    }
+
+    /**
+     * Replace the reports to cluster. They are projected once here, so
+     * re-clustering at another zoom level is a single pass.
+     */
+    public void setReports(Collection<ReportGeoIndex.Entry> newReports) {
+        final ReportGeoIndex.Entry[] snapshot = newReports.toArray(new ReportGeoIndex.Entry[0]);
+        executor.execute(() -> {
+            double[] newXs = new double[snapshot.length];
+            double[] newYs = new double[snapshot.length];
+            for (int i = 0; i < snapshot.length; i++) {
+                newXs[i] = projectX(snapshot[i].getLongitude());
+                newYs[i] = projectY(snapshot[i].getLatitude());
+            }
+            reports = snapshot;
+            xs = newXs;
+            ys = newYs;
+        });
+    }
+
+    /**
+     * Cluster the current reports for a zoom level. Older requests still
+     * waiting are superseded and never reach the callback.
+     */
+    public void cluster(float zoom, Callback callback) {
+        final int requestId = generation.incrementAndGet();
+        final int zoomLevel = (int) Math.floor(zoom);
+        executor.execute(() -> {
+            if (requestId != generation.get()) return;
+
+            long start = SystemClock.elapsedRealtime();
+            List<Cluster> clusters = compute(reports, xs, ys, zoomLevel);
+            Log.d(TAG, "Clustered " + reports.length + " reports into " + clusters.size()
+                    + " at zoom " + zoomLevel + " in " + (SystemClock.elapsedRealtime() - start) + " ms");
+
+            mainHandler.post(() -> {
+                if (requestId == generation.get()) {
+                    callback.onClustered(clusters, zoomLevel);
+                }
+            });
+        });
+    }
+
+    public void shutdown() {
+        generation.incrementAndGet();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Cluster reports for a zoom level on the calling thread
+     */
+    static List<Cluster> clusterNow(Collection<ReportGeoIndex.Entry> reports, int zoom) {
+        ReportGeoIndex.Entry[] array = reports.toArray(new ReportGeoIndex.Entry[0]);
+        double[] xs = new double[array.length];
+        double[] ys = new double[array.length];
+        for (int i = 0; i < array.length; i++) {
+            xs[i] = projectX(array[i].getLongitude());
+            ys[i] = projectY(array[i].getLatitude());
+        }
+        return compute(array, xs, ys, zoom);
+    }
+
+    private static List<Cluster> compute(ReportGeoIndex.Entry[] reports, double[] xs, double[] ys, int zoom) {
+        if (zoom >= MAX_CLUSTER_ZOOM) {
+            List<Cluster> singles = new ArrayList<>(reports.length);
+            for (ReportGeoIndex.Entry report : reports) {
+                Cluster cluster = new Cluster(zoom, 0);
+                cluster.add(report, categoryIndex(report.getCategory()));
+                singles.add(cluster);
+            }
+            return singles;
+        }
+
+        // Number of grid cells across the whole world at this zoom level
+        double cellsPerWorld = 256.0 * (1L << zoom) / CLUSTER_CELL_PX;
+
+        // Open-addressed table from grid cell to cluster, at most half full.
+        // At high zoom nearly every report has a cell of its own, so boxing
+        // each key into a HashMap would cost more than the clustering itself.
+        int capacity = 16;
+        while (capacity < reports.length * 2) capacity <<= 1;
+        int mask = capacity - 1;
+        long[] cells = new long[capacity];
+        Cluster[] slots = new Cluster[capacity];
+
+        List<Cluster> clusters = new ArrayList<>();
+        for (int i = 0; i < reports.length; i++) {
+            long cellX = (long) (xs[i] * cellsPerWorld);
+            long cellY = (long) (ys[i] * cellsPerWorld);
+            long key = (cellX << 32) | cellY;
+            int slot = slotOf(key, mask);
+            while (slots[slot] != null && cells[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            Cluster cluster = slots[slot];
+            if (cluster == null) {
+                cluster = new Cluster(zoom, key);
+                cells[slot] = key;
+                slots[slot] = cluster;
+                clusters.add(cluster);
+            }
+            cluster.add(reports[i], categoryIndex(reports[i].getCategory()));
+        }
+        return clusters;
+    }
+
+    private static int slotOf(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Position in ReportFragment.CATEGORIES, unknown categories count as the last one, Other
+     */
+    private static int categoryIndex(String category) {
+        String[] categories = ReportFragment.CATEGORIES;
+        if (category != null) {
+            for (int i = 0; i < categories.length - 1; i++) {
+                if (categories[i].equals(category)) return i;
+            }
+        }
+        return categories.length - 1;
+    }
+
+    /**
+     * Web Mercator x in [0, 1)
+     */
+    private static double projectX(double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    /**
+     * Web Mercator y in [0, 1), 0 at the top
+     */
+    private static double projectY(double latitude) {
+        double sin = Math.sin(Math.toRadians(Math.max(-85, Math.min(85, latitude))));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    /**
+     * One marker's worth of reports
+     */
+    public static class Cluster {
+        private final int zoom;
+        // Grid cell x in the high half, y in the low half
+        private final long cell;
+        // Per ReportFragment.CATEGORIES, only made once a second report joins
+        private int[] categoryCounts;
+        private int firstCategory;
+        private ReportGeoIndex.Entry first;
+        private int count;
+        private double latitudeSum;
+        private double longitudeSum;
+        private double minLat = 90, minLng = 180, maxLat = -90, maxLng = -180;
+
+        Cluster(int zoom, long cell) {
+            this.zoom = zoom;
+            this.cell = cell;
+        }
+
+        void add(ReportGeoIndex.Entry report, int category) {
+            if (count == 0) {
+                first = report;
+                firstCategory = category;
+            } else {
+                if (categoryCounts == null) {
+                    categoryCounts = new int[ReportFragment.CATEGORIES.length];
+                    categoryCounts[firstCategory]++;
+                }
+                categoryCounts[category]++;
+            }
+            count++;
+            latitudeSum += report.getLatitude();
+            longitudeSum += report.getLongitude();
+            minLat = Math.min(minLat, report.getLatitude());
+            maxLat = Math.max(maxLat, report.getLatitude());
+            minLng = Math.min(minLng, report.getLongitude());
+            maxLng = Math.max(maxLng, report.getLongitude());
+        }
+
+        /**
+         * Stable across re-clustering: the report id for a single report,
+         * otherwise the grid cell, which stays the same at one zoom level
+         */
+        public String getKey() {
+            if (count == 1) return first.getReportId();
+            return "cluster/" + zoom + "/" + (cell >>> 32) + "/" + (cell & 0xffffffffL);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * The report itself when the cluster holds just one
+         */
+        public ReportGeoIndex.Entry getSingleReport() {
+            return count == 1 ? first : null;
+        }
+
+        /**
+         * Centroid of the clustered reports
+         */
+        public double getLatitude() {
+            return latitudeSum / count;
+        }
+
+        public double getLongitude() {
+            return longitudeSum / count;
+        }
+
+        /**
+         * @return {minLat, minLng, maxLat, maxLng}
+         */
+        public double[] getBounds() {
+            return new double[]{minLat, minLng, maxLat, maxLng};
+        }
+
+        /**
+         * Reports per category, in ReportFragment.CATEGORIES order
+         */
+        public Map<String, Integer> getCategoryCounts() {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            if (count == 0) return counts;
+            String[] categories = ReportFragment.CATEGORIES;
+            if (categoryCounts == null) {
+                counts.put(categories[firstCategory], 1);
+                return counts;
+            }
+            for (int i = 0; i < categories.length; i++) {
+                if (categoryCounts[i] > 0) counts.put(categories[i], categoryCounts[i]);
+            }
+            return counts;
+        }
+
+        /**
+         * Category breakdown, largest first, e.g. "Road: 12, Water: 5"
+         */
+        public String describeCategories() {
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>(getCategoryCounts().entrySet());
+            Collections.sort(entries, (a, b) -> b.getValue() - a.getValue());
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<String, Integer> entry : entries) {
+                if (builder.length() > 0) builder.append(", ");
+                builder.append(entry.getKey()).append(": ").append(entry.getValue());
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.xavierproject;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.ClipData;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.location.Location;
@@ -9,6 +10,8 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.text.TextUtils;
+import android.text.format.DateUtils;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -17,6 +20,7 @@ import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
+import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -36,50 +40,74 @@ import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 public class ReportFragment extends Fragment implements OnMapReadyCallback {
 
+    private static final String TAG = "ReportFragment";
     private EditText editTextTitle, editTextDescription;
     private AutoCompleteTextView autoCompleteCategory;
     private ImageView imageViewPreview;
+    private LinearLayout layoutPhotoStrip;
     private Button buttonSelectImage, buttonSubmitReport, buttonViewHistory;
     private ProgressBar progressBar;
-    private TextView textViewUploadProgress, textViewLocationInfo;
+    private TextView textViewUploadProgress, textViewLocationInfo, textViewNearbyHeader;
+    private LinearLayout layoutNearbyReports, layoutNearbyList;
 
-    private Uri selectedImageUri;
-    private DatabaseReference databaseReference;
+    private final List<Uri> selectedImageUris = new ArrayList<>();
+    private ReportOutbox reportOutbox;
+    private DuplicateReportDetector duplicateDetector;
     private FirebaseAuth mAuth;
     private GoogleMap googleMap;
     private FusedLocationProviderClient fusedLocationClient;
     private Location currentLocation;
 
+    // Open complaints around the user, so they can see their issue is already filed
+    private final ReportKdTree nearbyTree = new ReportKdTree();
+    private final List<Marker> nearbyMarkers = new ArrayList<>();
+    private MapReportLoader nearbyLoader;
+    private MarkerIconCache iconCache;
+
     private ActivityResultLauncher<Intent> imagePickerLauncher;
     private ActivityResultLauncher<Intent> cameraLauncher;
     private ActivityResultLauncher<String[]> locationPermissionLauncher;
 
-    private static final String UPLOAD_PRESET = "XavierProject";
     private static final float DEFAULT_ZOOM = 15f;
-
-    // Category options
-    private static final String[] CATEGORIES = {
+    private static final int MAX_PHOTOS = 5;
+    private static final double NEARBY_RADIUS_METERS = 200;
+    // Area kept loaded around the user, a bit more than the radius so small moves don't reload
+    private static final double NEARBY_LOAD_METERS = 400;
+    private static final int MAX_NEARBY_SHOWN = 5;
+
+    // Category options, also offered as complaint queue filters
+    static final String[] CATEGORIES = {
             "Road", "Water", "Garbage", "Streetlight", "Drainage",
             "Electricity", "Park", "Public Property", "Other"
     };
 
+    // Categories that are a hazard when left open, weighted up on the heatmap
+    static final String[] HAZARD_CATEGORIES = {"Electricity", "Drainage", "Road"};
+
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         // Initialize Firebase
         mAuth = FirebaseAuth.getInstance();
-        databaseReference = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference("reports");
+        reportOutbox = ReportOutbox.getInstance(requireContext());
+        duplicateDetector = new DuplicateReportDetector();
+
+        // Pick up reports journaled while offline or before the app was killed
+        if (reportOutbox.hasPending()) {
+            reportOutbox.scheduleSync();
+        }
 
         // Initialize location client
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(requireActivity());
@@ -89,12 +117,22 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
                     if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
-                        selectedImageUri = result.getData().getData();
-                        if (selectedImageUri != null) {
-                            displaySelectedImage();
-                        } else {
+                        List<Uri> picked = new ArrayList<>();
+                        ClipData clipData = result.getData().getClipData();
+                        if (clipData != null) {
+                            for (int i = 0; i < clipData.getItemCount(); i++) {
+                                picked.add(clipData.getItemAt(i).getUri());
+                            }
+                        } else if (result.getData().getData() != null) {
+                            picked.add(result.getData().getData());
+                        }
+
+                        if (picked.isEmpty()) {
                             Toast.makeText(getContext(), "Failed to get image", Toast.LENGTH_SHORT).show();
                         }
+                        for (Uri uri : picked) {
+                            addSelectedImage(uri);
+                        }
                     }
                 }
         );
@@ -104,9 +142,9 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
                     if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
-                        selectedImageUri = result.getData().getData();
-                        if (selectedImageUri != null) {
-                            displaySelectedImage();
+                        Uri uri = result.getData().getData();
+                        if (uri != null) {
+                            addSelectedImage(uri);
                         }
                     }
                 }
@@ -151,12 +189,16 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
         editTextDescription = view.findViewById(R.id.editTextDescription);
         autoCompleteCategory = view.findViewById(R.id.autoCompleteCategory);
         imageViewPreview = view.findViewById(R.id.imageViewPreview);
+        layoutPhotoStrip = view.findViewById(R.id.layoutPhotoStrip);
         buttonSelectImage = view.findViewById(R.id.buttonSelectImage);
         buttonSubmitReport = view.findViewById(R.id.buttonSubmitReport);
         buttonViewHistory = view.findViewById(R.id.buttonViewHistory);
         progressBar = view.findViewById(R.id.progressBar);
         textViewUploadProgress = view.findViewById(R.id.textViewUploadProgress);
         textViewLocationInfo = view.findViewById(R.id.textViewLocationInfo);
+        layoutNearbyReports = view.findViewById(R.id.layoutNearbyReports);
+        layoutNearbyList = view.findViewById(R.id.layoutNearbyList);
+        textViewNearbyHeader = view.findViewById(R.id.textViewNearbyHeader);
     }
 
     private void setupCategoryDropdown() {
@@ -202,6 +244,7 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
         googleMap = map;
         googleMap.getUiSettings().setZoomControlsEnabled(true);
         googleMap.getUiSettings().setMyLocationButtonEnabled(true);
+        iconCache = new MarkerIconCache(requireContext());
 
         // Request location permission and get current location
         checkLocationPermission();
@@ -244,6 +287,7 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
                     if (location != null) {
                         currentLocation = location;
                         updateLocationUI(location);
+                        loadNearbyReports(location);
                     } else {
                         Toast.makeText(getContext(),
                                 "Getting current location...",
@@ -272,6 +316,9 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
                     .position(latLng)
                     .title("Current Location"));
             googleMap.animateCamera(CameraUpdateFactory.newLatLngZoom(latLng, DEFAULT_ZOOM));
+            // clear() took the nearby markers with it
+            nearbyMarkers.clear();
+            showNearbyReports();
         }
 
         // Update location text
@@ -281,10 +328,113 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
         textViewLocationInfo.setVisibility(View.VISIBLE);
     }
 
+    /**
+     * Keep the reports around the user loaded, the tree answers the radius queries
+     */
+    private void loadNearbyReports(Location location) {
+        if (nearbyLoader == null) {
+            nearbyLoader = new MapReportLoader(new ReportGeoIndex(), new MapReportLoader.Listener() {
+                @Override
+                public void onReportsChanged(Collection<ReportGeoIndex.Entry> reports) {
+                    nearbyTree.sync(reports);
+                    showNearbyReports();
+                }
+
+                @Override
+                public void onError(String error) {
+                    Log.e(TAG, "Failed to load nearby reports: " + error);
+                }
+            });
+        }
+        double dLat = NEARBY_LOAD_METERS / 111320;
+        double dLng = dLat / Math.max(0.01, Math.cos(Math.toRadians(location.getLatitude())));
+        nearbyLoader.setViewport(new LatLngBounds(
+                new LatLng(location.getLatitude() - dLat, location.getLongitude() - dLng),
+                new LatLng(location.getLatitude() + dLat, location.getLongitude() + dLng)));
+    }
+
+    /**
+     * List and mark the open reports within the nearby radius
+     */
+    private void showNearbyReports() {
+        if (!isAdded() || currentLocation == null) return;
+
+        List<ReportGeoIndex.Entry> nearby = new ArrayList<>();
+        for (ReportGeoIndex.Entry entry : nearbyTree.within(currentLocation.getLatitude(),
+                currentLocation.getLongitude(), NEARBY_RADIUS_METERS)) {
+            if (!"resolved".equalsIgnoreCase(entry.getStatus())) {
+                nearby.add(entry);
+            }
+        }
+
+        for (Marker marker : nearbyMarkers) {
+            marker.remove();
+        }
+        nearbyMarkers.clear();
+        layoutNearbyList.removeAllViews();
+
+        if (nearby.isEmpty()) {
+            layoutNearbyReports.setVisibility(View.GONE);
+            return;
+        }
+
+        textViewNearbyHeader.setText(nearby.size() + (nearby.size() == 1 ? " open report" : " open reports")
+                + " within " + (int) NEARBY_RADIUS_METERS + " m");
+        int padding = (int) (6 * getResources().getDisplayMetrics().density);
+        for (int i = 0; i < nearby.size() && i < MAX_NEARBY_SHOWN; i++) {
+            ReportGeoIndex.Entry entry = nearby.get(i);
+            int distance = (int) Math.round(entry.distanceTo(currentLocation.getLatitude(), currentLocation.getLongitude()));
+            String title = entry.getTitle() != null ? entry.getTitle() : entry.getCategory();
+
+            TextView row = new TextView(requireContext());
+            row.setText(title + " \u00B7 " + entry.getCategory() + " \u00B7 " + distance + " m \u00B7 " + entry.getStatus());
+            row.setTextSize(13);
+            row.setTextColor(0xFF2196F3);
+            row.setPadding(0, padding, 0, padding);
+            row.setOnClickListener(v -> showNearbyReport(entry, distance));
+            layoutNearbyList.addView(row);
+        }
+        layoutNearbyReports.setVisibility(View.VISIBLE);
+
+        if (googleMap != null) {
+            for (ReportGeoIndex.Entry entry : nearby) {
+                Marker marker = googleMap.addMarker(new MarkerOptions()
+                        .position(new LatLng(entry.getLatitude(), entry.getLongitude()))
+                        .title(entry.getTitle() != null ? entry.getTitle() : entry.getCategory())
+                        .snippet("Status: " + entry.getStatus())
+                        .icon(iconCache.reportIcon(entry.getCategory(), entry.getStatus()))
+                        .anchor(0.5f, 0.5f));
+                if (marker != null) {
+                    nearbyMarkers.add(marker);
+                }
+            }
+        }
+    }
+
+    private void showNearbyReport(ReportGeoIndex.Entry entry, int distance) {
+        if (googleMap != null) {
+            googleMap.animateCamera(CameraUpdateFactory.newLatLng(
+                    new LatLng(entry.getLatitude(), entry.getLongitude())));
+        }
+        String title = entry.getTitle() != null ? entry.getTitle() : entry.getCategory();
+        new androidx.appcompat.app.AlertDialog.Builder(requireContext())
+                .setTitle(title)
+                .setMessage(entry.getCategory() + " Complaint, " + entry.getStatus() + ", reported "
+                        + DateUtils.getRelativeTimeSpanString(entry.getTimestamp()) + ", " + distance + " m away."
+                        + (entry.getDescription() != null ? "\n\n" + entry.getDescription() : ""))
+                .setPositiveButton("Endorse", (dialog, which) -> endorseExisting(entry.getReportId(), false))
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
     /**
      * Show dialog to choose between camera and gallery
      */
     private void showImageSourceDialog() {
+        if (selectedImageUris.size() >= MAX_PHOTOS) {
+            Toast.makeText(getContext(), "You can add up to " + MAX_PHOTOS + " photos", Toast.LENGTH_SHORT).show();
+            return;
+        }
         String[] options = {"Take Photo", "Choose from Gallery"};
         androidx.appcompat.app.AlertDialog.Builder builder =
                 new androidx.appcompat.app.AlertDialog.Builder(requireContext());
@@ -312,27 +462,77 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
     }
 
     /**
-     * Open gallery to pick image
+     * Open gallery to pick one or more images
      */
     private void openImagePicker() {
-        Intent intent = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
         intent.setType("image/*");
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
         imagePickerLauncher.launch(intent);
     }
 
     /**
-     * Display the selected image in preview
+     * Add a picked photo and start uploading it while the form is filled in
+     */
+    private void addSelectedImage(Uri uri) {
+        if (selectedImageUris.contains(uri)) return;
+        if (selectedImageUris.size() >= MAX_PHOTOS) {
+            Toast.makeText(getContext(), "You can add up to " + MAX_PHOTOS + " photos", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        selectedImageUris.add(uri);
+        reportOutbox.prefetch(uri, this);
+        displaySelectedImages();
+    }
+
+    private void removeSelectedImage(Uri uri) {
+        selectedImageUris.remove(uri);
+        reportOutbox.cancelPrefetch(uri);
+        displaySelectedImages();
+    }
+
+    /**
+     * Show the first photo in the preview and every photo in the strip below it
      */
-    private void displaySelectedImage() {
-        if (selectedImageUri != null && isAdded()) {
+    private void displaySelectedImages() {
+        if (!isAdded()) return;
+
+        layoutPhotoStrip.removeAllViews();
+        if (selectedImageUris.isEmpty()) {
+            imageViewPreview.setImageDrawable(null);
+            imageViewPreview.setVisibility(View.GONE);
+            layoutPhotoStrip.setVisibility(View.GONE);
+            return;
+        }
+
+        Glide.with(this)
+                .load(selectedImageUris.get(0))
+                .centerCrop()
+                .placeholder(R.drawable.ic_image_placeholder)
+                .error(R.drawable.ic_error_image)
+                .into(imageViewPreview);
+        imageViewPreview.setVisibility(View.VISIBLE);
+
+        int size = (int) (64 * getResources().getDisplayMetrics().density);
+        int margin = (int) (8 * getResources().getDisplayMetrics().density);
+        for (Uri uri : selectedImageUris) {
+            ImageView thumbnail = new ImageView(requireContext());
+            LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(size, size);
+            params.setMarginEnd(margin);
+            thumbnail.setLayoutParams(params);
+            thumbnail.setScaleType(ImageView.ScaleType.CENTER_CROP);
+            thumbnail.setContentDescription("Selected photo, tap to remove");
+            thumbnail.setOnClickListener(v -> removeSelectedImage(uri));
             Glide.with(this)
-                    .load(selectedImageUri)
+                    .load(uri)
                     .centerCrop()
                     .placeholder(R.drawable.ic_image_placeholder)
                     .error(R.drawable.ic_error_image)
-                    .into(imageViewPreview);
-            imageViewPreview.setVisibility(View.VISIBLE);
+                    .into(thumbnail);
+            layoutPhotoStrip.addView(thumbnail);
         }
+        layoutPhotoStrip.setVisibility(View.VISIBLE);
     }
 
     /**
@@ -347,8 +547,8 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
             return;
         }
 
-        if (selectedImageUri == null) {
-            Toast.makeText(getContext(), "Please select an image", Toast.LENGTH_SHORT).show();
+        if (selectedImageUris.isEmpty()) {
+            Toast.makeText(getContext(), "Please select at least one image", Toast.LENGTH_SHORT).show();
             return;
         }
 
@@ -361,7 +561,70 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
         }
 
         showLoading(true);
-        uploadImageToCloudinary(title, category, description);
+        updateUploadProgress("Checking for similar complaints...");
+        duplicateDetector.findDuplicates(category, currentLocation.getLatitude(),
+                currentLocation.getLongitude(), matches -> {
+                    if (!isAdded()) return;
+                    if (matches.isEmpty()) {
+                        submitToOutbox(title, category, description);
+                    } else {
+                        showDuplicateDialog(matches.get(0), title, category, description);
+                    }
+                });
+    }
+
+    /**
+     * Offer to endorse an open Complaint nearby instead of filing a duplicate
+     */
+    private void showDuplicateDialog(ReportGeoIndex.Entry match, String title, String category, String description) {
+        int distance = (int) Math.round(match.distanceTo(currentLocation.getLatitude(), currentLocation.getLongitude()));
+        CharSequence reportedAgo = DateUtils.getRelativeTimeSpanString(match.getTimestamp());
+        String matchTitle = match.getTitle() != null ? match.getTitle() : match.getCategory();
+
+        new androidx.appcompat.app.AlertDialog.Builder(requireContext())
+                .setTitle("Similar Complaint Found")
+                .setMessage("\"" + matchTitle + "\" was reported " + distance + " m away, " + reportedAgo
+                        + ". Would you like to endorse it instead of submitting a new Complaint?")
+                .setPositiveButton("Endorse", (dialog, which) -> endorseExisting(match.getReportId(), true))
+                .setNegativeButton("Submit Anyway", (dialog, which) -> submitToOutbox(title, category, description))
+                .setNeutralButton("Cancel", (dialog, which) -> {
+                    showLoading(false);
+                    updateUploadProgress("");
+                })
+                .setCancelable(false)
+                .show();
+    }
+
+    /**
+     * @param replacesDraft True when endorsing instead of submitting the form, which is then
+     *                      discarded. Endorsing from the nearby map leaves the draft alone.
+     */
+    private void endorseExisting(String reportId, boolean replacesDraft) {
+        String userId = mAuth.getCurrentUser() != null ?
+                mAuth.getCurrentUser().getUid() : "anonymous";
+
+        if (replacesDraft) updateUploadProgress("Endorsing Complaint...");
+        duplicateDetector.endorse(reportId, userId)
+                .addOnSuccessListener(aVoid -> {
+                    if (!isAdded()) return;
+                    Toast.makeText(getContext(),
+                            "Thanks! Your support was added to the existing Complaint.",
+                            Toast.LENGTH_LONG).show();
+                    if (!replacesDraft) return;
+                    showLoading(false);
+                    // The photos aren't needed any more
+                    for (Uri uri : selectedImageUris) {
+                        reportOutbox.cancelPrefetch(uri);
+                    }
+                    clearForm();
+                })
+                .addOnFailureListener(e -> {
+                    if (!isAdded()) return;
+                    if (replacesDraft) showLoading(false);
+                    Toast.makeText(getContext(),
+                            "Failed to endorse Complaint: " + e.getMessage(),
+                            Toast.LENGTH_SHORT).show();
+                });
     }
 
     /**
@@ -402,61 +665,11 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
     }
 
     /**
-     * Upload image to Cloudinary
+     * Journal the Complaint in the outbox and send it. If this fragment is
+     * destroyed mid-upload, the upload is cancelled and background sync finishes it.
      */
-    private void uploadImageToCloudinary(String title, String category, String description) {
-        if (getContext() == null) {
-            showLoading(false);
-            Toast.makeText(requireContext(), "Error: Context not available", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        CloudinaryHelper.uploadImage(requireContext(), selectedImageUri, UPLOAD_PRESET,
-                new CloudinaryHelper.CloudinaryUploadCallback() {
-                    @Override
-                    public void onStart() {
-                        if (isAdded()) {
-                            updateUploadProgress("Preparing image...");
-                        }
-                    }
-
-                    @Override
-                    public void onProgress(int progress) {
-                        if (isAdded()) {
-                            String progressText = progress < 70 ? "Uploading: " + progress + "%" :
-                                    progress < 90 ? "Processing: " + progress + "%" :
-                                            "Finalizing: " + progress + "%";
-                            updateUploadProgress(progressText);
-                        }
-                    }
-
-                    @Override
-                    public void onSuccess(String imageUrl, String publicId) {
-                        if (isAdded()) {
-                            updateUploadProgress("Upload complete! Saving Complaint...");
-                            saveReportToFirebase(title, category, description, imageUrl, publicId);
-                        }
-                    }
-
-                    @Override
-                    public void onError(String error) {
-                        if (isAdded()) {
-                            showLoading(false);
-                            Toast.makeText(getContext(), "Upload failed: " + error,
-                                    Toast.LENGTH_LONG).show();
-                            updateUploadProgress("");
-                        }
-                    }
-                }
-        );
-    }
-
-    /**
-     * Save Complaint data to Firebase
-     */
-    private void saveReportToFirebase(String title, String category, String description,
-                                      String imageUrl, String publicId) {
-        String reportId = databaseReference.push().getKey();
+    private void submitToOutbox(String title, String category, String description) {
+        String reportId = reportOutbox.newReportId();
         String userId = mAuth.getCurrentUser() != null ?
                 mAuth.getCurrentUser().getUid() : "anonymous";
 
@@ -466,48 +679,54 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
             return;
         }
 
-        Map<String, Object> reportData = new HashMap<>();
-        reportData.put("reportId", reportId);
-        reportData.put("userId", userId);
-        reportData.put("title", title);
-        reportData.put("category", category);
-        reportData.put("description", description);
-        reportData.put("imageUrl", imageUrl);
-        reportData.put("imagePublicId", publicId);
-        reportData.put("thumbnailUrl", CloudinaryHelper.getThumbnailUrl(publicId));
-        reportData.put("timestamp", System.currentTimeMillis());
-        reportData.put("status", "pending");
-
-        // Add location data
+        PendingReport report = new PendingReport(reportId, userId, title, category, description);
         if (currentLocation != null) {
-            Map<String, Object> locationData = new HashMap<>();
-            locationData.put("latitude", currentLocation.getLatitude());
-            locationData.put("longitude", currentLocation.getLongitude());
-            locationData.put("accuracy", currentLocation.getAccuracy());
-            reportData.put("location", locationData);
+            report.setLocation(currentLocation.getLatitude(), currentLocation.getLongitude(),
+                    currentLocation.getAccuracy());
         }
 
-        databaseReference.child(reportId).setValue(reportData)
-                .addOnSuccessListener(aVoid -> {
-                    if (isAdded()) {
-                        showLoading(false);
-                        Toast.makeText(getContext(),
-                                "Complaint submitted successfully!",
-                                Toast.LENGTH_SHORT).show();
-                        clearForm();
+        updateUploadProgress("Preparing image...");
+        reportOutbox.submit(report, selectedImageUris, this, new ReportOutbox.SubmitCallback() {
+            @Override
+            public void onProgress(UploadProgress progress) {
+                if (isAdded()) {
+                    updateUploadProgress(progress.isComplete() ? "Upload complete! Saving Complaint..." :
+                            progress.describe());
+                }
+            }
 
-                        // Show option to view history
-                        showSuccessDialog();
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    if (isAdded()) {
-                        showLoading(false);
-                        Toast.makeText(getContext(),
-                                "Failed to save Complaint: " + e.getMessage(),
-                                Toast.LENGTH_LONG).show();
-                    }
-                });
+            @Override
+            public void onSubmitted(String reportId) {
+                if (isAdded()) {
+                    showLoading(false);
+                    Toast.makeText(getContext(),
+                            "Complaint submitted successfully!",
+                            Toast.LENGTH_SHORT).show();
+                    clearForm();
+
+                    // Show option to view history
+                    showSuccessDialog();
+                }
+            }
+
+            @Override
+            public void onQueued(String reason) {
+                if (isAdded()) {
+                    showLoading(false);
+                    Toast.makeText(getContext(), reason, Toast.LENGTH_LONG).show();
+                    clearForm();
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                if (isAdded()) {
+                    showLoading(false);
+                    Toast.makeText(getContext(), error, Toast.LENGTH_LONG).show();
+                    updateUploadProgress("");
+                }
+            }
+        });
     }
 
     /**
@@ -569,9 +788,8 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
         editTextTitle.setText("");
         autoCompleteCategory.setText("");
         editTextDescription.setText("");
-        imageViewPreview.setImageDrawable(null);
-        imageViewPreview.setVisibility(View.GONE);
-        selectedImageUri = null;
+        selectedImageUris.clear();
+        displaySelectedImages();
         textViewUploadProgress.setText("");
 
         // Reset map to current location
@@ -583,6 +801,14 @@ public class ReportFragment extends Fragment implements OnMapReadyCallback {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        selectedImageUri = null;
+        if (nearbyLoader != null) {
+            nearbyLoader.detachAll();
+            nearbyLoader = null;
+        }
+        nearbyMarkers.clear();
+        for (Uri uri : selectedImageUris) {
+            reportOutbox.cancelPrefetch(uri);
+        }
+        selectedImageUris.clear();
     }
 }
@@ -0,0 +1,304 @@
+package com.example.xavierproject;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index of reports under reports_by_geohash/{cell}/{reportId}.
+ * Each entry is a small summary, so location lookups never download
+ * full reports.
+ */
+public class ReportGeoIndex {
+
+    private static final String TAG = "ReportGeoIndex";
+    public static final String INDEX_NODE = "reports_by_geohash";
+
+    // Cells of roughly 1.2 km x 0.6 km
+    public static final int INDEX_PRECISION = 6;
+    // Coarser cells are used when a query would need more than this many
+    private static final int MAX_COVER_CELLS = 16;
+    private static final int SNIPPET_LENGTH = 50;
+
+    private final DatabaseReference indexRef;
+
+    public interface QueryCallback {
+        void onResult(List<Entry> entries);
+        void onError(String error);
+    }
+
+    public ReportGeoIndex() {
+        this.indexRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference(INDEX_NODE);
+    }
+
+    /**
+     * Index cell a location falls in
+     */
+    public static String cellOf(double latitude, double longitude) {
+        return GeoHash.encode(latitude, longitude, INDEX_PRECISION);
+    }
+
+    /**
+     * Path of a report's index entry, relative to the database root
+     */
+    public static String entryPath(String cell, String reportId) {
+        return INDEX_NODE + "/" + cell + "/" + reportId;
+    }
+
+    /**
+     * Summary stored in the index for one report
+     */
+    public static Map<String, Object> entryData(String title, String category, String description, String status,
+                                                double latitude, double longitude, long timestamp) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("title", title);
+        // Enough for a marker snippet, the full text stays in the report
+        entry.put("description", description != null && description.length() > SNIPPET_LENGTH
+                ? description.substring(0, SNIPPET_LENGTH) + "..." : description);
+        entry.put("category", category);
+        entry.put("status", status);
+        entry.put("latitude", latitude);
+        entry.put("longitude", longitude);
+        entry.put("timestamp", timestamp);
+        return entry;
+    }
+
+    /**
+     * Multi-path update setting a report's status in the report, its index
+     * entry and its city shard entry, so they never disagree
+     * @param cell Index cell of the report, or null if it isn't indexed
+     * @param cityKey City shard of the report, or null if it isn't sharded
+     * @param category Report category, for the shard entry's composite keys
+     * @param timestamp Report creation time, for the shard entry's composite keys
+     */
+    public static Map<String, Object> statusUpdates(String reportId, String cell, String cityKey,
+                                                    String category, long timestamp, String status) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("reports/" + reportId + "/status", status);
+        if (cell != null) {
+            updates.put(entryPath(cell, reportId) + "/status", status);
+        }
+        if (cityKey != null) {
+            String shardPath = ReportCityShard.entryPath(cityKey, reportId);
+            updates.put(shardPath + "/status", status);
+            Map<String, Object> keys = ReportCityShard.queueKeys(status, category, timestamp);
+            updates.put(shardPath + "/" + ReportCityShard.STATUS_TIMESTAMP, keys.get(ReportCityShard.STATUS_TIMESTAMP));
+            updates.put(shardPath + "/" + ReportCityShard.STATUS_CATEGORY_TIMESTAMP,
+                    keys.get(ReportCityShard.STATUS_CATEGORY_TIMESTAMP));
+        }
+        return updates;
+    }
+
+    /**
+     * Set a report's status, keeping its index and shard entries in sync. Reads
+     * where the report is indexed, and what its shard keys are built from,
+     * first. Older reports only get the status.
+     */
+    public static Task<Void> updateStatus(String reportId, String status) {
+        DatabaseReference rootRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference();
+        DatabaseReference reportRef = rootRef.child("reports").child(reportId);
+        Task<DataSnapshot> cellTask = reportRef.child("geohash").get();
+        Task<DataSnapshot> cityTask = reportRef.child("city").get();
+        Task<DataSnapshot> categoryTask = reportRef.child("category").get();
+        Task<DataSnapshot> timestampTask = reportRef.child("timestamp").get();
+        return Tasks.whenAll(cellTask, cityTask, categoryTask, timestampTask)
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    String cell = cellTask.getResult().getValue(String.class);
+                    String cityKey = cityTask.getResult().getValue(String.class);
+                    String category = categoryTask.getResult().getValue(String.class);
+                    Long timestamp = timestampTask.getResult().getValue(Long.class);
+                    return rootRef.updateChildren(statusUpdates(reportId, cell, cityKey, category,
+                            timestamp != null ? timestamp : 0, status));
+                });
+    }
+
+    /**
+     * Set the status of many reports from one city shard in a single atomic
+     * multi-path update, covering each report, its index entry and its shard
+     * entry. Everything needed comes from the shard entries already loaded,
+     * so nothing is read first.
+     */
+    public static Task<Void> updateStatuses(String cityKey, Collection<Complaint> complaints, String status) {
+        Map<String, Object> updates = new HashMap<>();
+        for (Complaint complaint : complaints) {
+            // Reports with a location are always indexed, those without are only sharded
+            String cell = complaint.getLatitude() != 0 || complaint.getLongitude() != 0
+                    ? cellOf(complaint.getLatitude(), complaint.getLongitude()) : null;
+            updates.putAll(statusUpdates(complaint.getReportId(), cell, cityKey,
+                    complaint.getCategory(), complaint.getTimestamp(), status));
+        }
+        return FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app")
+                .getReference().updateChildren(updates);
+    }
+
+    /**
+     * Find indexed reports within a radius of a point
+     * @param callback Results on the main thread, unsorted
+     */
+    public void findWithin(double latitude, double longitude, double radiusMeters, QueryCallback callback) {
+        List<GeoHash.Range> ranges = GeoHash.coverRadius(latitude, longitude, radiusMeters,
+                INDEX_PRECISION, MAX_COVER_CELLS);
+        query(ranges, entry -> entry.distanceTo(latitude, longitude) <= radiusMeters, callback);
+    }
+
+    /**
+     * Find indexed reports inside a bounding box
+     * @param callback Results on the main thread, unsorted
+     */
+    public void findInBounds(double minLat, double minLng, double maxLat, double maxLng, QueryCallback callback) {
+        List<GeoHash.Range> ranges = GeoHash.cover(minLat, minLng, maxLat, maxLng,
+                INDEX_PRECISION, MAX_COVER_CELLS);
+        query(ranges, entry -> entry.getLatitude() >= minLat && entry.getLatitude() <= maxLat
+                && entry.getLongitude() >= minLng && entry.getLongitude() <= maxLng, callback);
+    }
+
+    /**
+     * Query for the index cells inside one prefix range
+     */
+    public Query rangeQuery(GeoHash.Range range) {
+        return indexRef.orderByKey().startAt(range.getStart()).endAt(range.getEndKey());
+    }
+
+    /**
+     * Read every range once, keeping the entries that pass the filter.
+     * Ranges cover whole cells, so the filter trims the over-fetch at the edges.
+     */
+    private void query(List<GeoHash.Range> ranges, EntryFilter filter, QueryCallback callback) {
+        Log.d(TAG, "Querying " + ranges.size() + " ranges: " + ranges);
+        List<Entry> matches = new ArrayList<>();
+        final int[] pending = {ranges.size()};
+        final boolean[] failed = {false};
+
+        if (ranges.isEmpty()) {
+            callback.onResult(matches);
+            return;
+        }
+
+        for (GeoHash.Range range : ranges) {
+            rangeQuery(range).addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    for (DataSnapshot cell : snapshot.getChildren()) {
+                        for (DataSnapshot child : cell.getChildren()) {
+                            Entry entry = Entry.fromSnapshot(child);
+                            if (entry != null && filter.accept(entry)) {
+                                matches.add(entry);
+                            }
+                        }
+                    }
+                    if (--pending[0] == 0 && !failed[0]) {
+                        callback.onResult(matches);
+                    }
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    Log.e(TAG, "Index query failed: " + error.getMessage());
+                    if (!failed[0]) {
+                        failed[0] = true;
+                        callback.onError(error.getMessage());
+                    }
+                }
+            });
+        }
+    }
+
+    private interface EntryFilter {
+        boolean accept(Entry entry);
+    }
+
+    /**
+     * One report as stored in the index
+     */
+    public static class Entry {
+        private final String reportId;
+        private final String title;
+        private final String category;
+        private final String description;
+        private final String status;
+        private final double latitude;
+        private final double longitude;
+        private final long timestamp;
+
+        Entry(String reportId, String title, String category, String description, String status,
+              double latitude, double longitude, long timestamp) {
+            this.reportId = reportId;
+            this.title = title;
+            this.category = category;
+            this.description = description;
+            this.status = status;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.timestamp = timestamp;
+        }
+
+        static Entry fromSnapshot(DataSnapshot snapshot) {
+            Double latitude = snapshot.child("latitude").getValue(Double.class);
+            Double longitude = snapshot.child("longitude").getValue(Double.class);
+            if (latitude == null || longitude == null) {
+                return null;
+            }
+            Long timestamp = snapshot.child("timestamp").getValue(Long.class);
+            return new Entry(snapshot.getKey(),
+                    snapshot.child("title").getValue(String.class),
+                    snapshot.child("category").getValue(String.class),
+                    snapshot.child("description").getValue(String.class),
+                    snapshot.child("status").getValue(String.class),
+                    latitude, longitude, timestamp != null ? timestamp : 0);
+        }
+
+        public double distanceTo(double latitude, double longitude) {
+            return GeoHash.distanceMeters(this.latitude, this.longitude, latitude, longitude);
+        }
+
+        public String getReportId() {
+            return reportId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.xavierproject;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One-time migration writing the geohash index and city shard entries of
+ * reports made before those existed, so they show up on the map and in the
+ * complaint queue. Reads reports/ a batch at a time and only writes what is
+ * missing, so it is safe to run again after being interrupted. Once done it
+ * leaves a marker in the database, so no other device repeats it. Use from
+ * the main thread.
+ */
+public class ReportIndexBackfill {
+
+    private static final String TAG = "ReportIndexBackfill";
+    private static final String PREFS_NAME = "ReportIndexBackfill";
+    private static final String KEY_VERSION = "version";
+
+    // Bump when another index needs filling in for old reports
+    private static final int VERSION = 1;
+    private static final String MARKER_NODE = "index_backfill";
+    private static final int BATCH_SIZE = 200;
+
+    private static boolean running;
+
+    /**
+     * Run the migration unless it has already been run, here or on another device.
+     * Needs write access to reports/, so call it from admin screens only.
+     */
+    public static void runIfNeeded(Context context) {
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (running || prefs.getInt(KEY_VERSION, 0) >= VERSION) return;
+        running = true;
+
+        DatabaseReference rootRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference();
+        rootRef.child(MARKER_NODE).child(KEY_VERSION).get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Couldn't read backfill marker", task.getException());
+                running = false;
+                return;
+            }
+            Long done = task.getResult().getValue(Long.class);
+            if (done != null && done >= VERSION) {
+                prefs.edit().putInt(KEY_VERSION, VERSION).apply();
+                running = false;
+                return;
+            }
+            Log.d(TAG, "Backfilling report indexes");
+            backfillFrom(rootRef, prefs, null, 0);
+        });
+    }
+
+    /**
+     * Fill in the batch of reports after afterKey, then the next one
+     */
+    private static void backfillFrom(DatabaseReference rootRef, SharedPreferences prefs, String afterKey, int written) {
+        Query batch = rootRef.child("reports").orderByKey();
+        if (afterKey != null) batch = batch.startAfter(afterKey);
+        batch.limitToFirst(BATCH_SIZE).get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Backfill read failed", task.getException());
+                running = false;
+                return;
+            }
+            Map<String, Object> updates = new HashMap<>();
+            String lastKey = null;
+            int count = 0;
+            int missing = 0;
+            for (DataSnapshot report : task.getResult().getChildren()) {
+                lastKey = report.getKey();
+                count++;
+                Map<String, Object> reportUpdates = updatesFor(report);
+                if (!reportUpdates.isEmpty()) {
+                    updates.putAll(reportUpdates);
+                    missing++;
+                }
+            }
+
+            final String nextKey = lastKey;
+            final boolean last = count < BATCH_SIZE;
+            final int total = written + missing;
+            Task<Void> write = updates.isEmpty() ? Tasks.forResult(null) : rootRef.updateChildren(updates);
+            write.addOnCompleteListener(writeTask -> {
+                if (!writeTask.isSuccessful()) {
+                    Log.e(TAG, "Backfill write failed", writeTask.getException());
+                    running = false;
+                } else if (!last) {
+                    backfillFrom(rootRef, prefs, nextKey, total);
+                } else {
+                    finish(rootRef, prefs, total);
+                }
+            });
+        });
+    }
+
+    private static void finish(DatabaseReference rootRef, SharedPreferences prefs, int written) {
+        Map<String, Object> marker = new HashMap<>();
+        marker.put(KEY_VERSION, VERSION);
+        marker.put("finishedAt", System.currentTimeMillis());
+        rootRef.child(MARKER_NODE).setValue(marker).addOnCompleteListener(task -> {
+            running = false;
+            if (task.isSuccessful()) {
+                prefs.edit().putInt(KEY_VERSION, VERSION).apply();
+                Log.d(TAG, "Backfill done, filled in " + written + " reports");
+            } else {
+                Log.e(TAG, "Couldn't write backfill marker", task.getException());
+            }
+        });
+    }
+
+    /**
+     * Multi-path writes adding whatever a report is missing, or nothing if it
+     * was made after the index and shards existed
+     */
+    static Map<String, Object> updatesFor(DataSnapshot report) {
+        Map<String, Object> updates = new HashMap<>();
+        String reportId = report.getKey();
+        if (reportId == null) return updates;
+
+        // Reports from the app keep coordinates under "location", older ones at the top level
+        Double latitude = report.child("location").child("latitude").getValue(Double.class);
+        Double longitude = report.child("location").child("longitude").getValue(Double.class);
+        if (latitude == null || longitude == null) {
+            latitude = report.child("latitude").getValue(Double.class);
+            longitude = report.child("longitude").getValue(Double.class);
+        }
+        boolean hasLocation = latitude != null && longitude != null;
+        String title = report.child("title").getValue(String.class);
+        String category = report.child("category").getValue(String.class);
+        String description = report.child("description").getValue(String.class);
+        String status = report.child("status").getValue(String.class);
+        if (status == null) status = "pending";
+        Long timestamp = report.child("timestamp").getValue(Long.class);
+        long time = timestamp != null ? timestamp : 0;
+
+        if (hasLocation && !report.hasChild("geohash")) {
+            String cell = ReportGeoIndex.cellOf(latitude, longitude);
+            updates.put("reports/" + reportId + "/geohash", cell);
+            updates.put(ReportGeoIndex.entryPath(cell, reportId), ReportGeoIndex.entryData(
+                    title, category, description, status, latitude, longitude, time));
+        }
+        if (report.hasChild("city")) return updates;
+
+        String cityKey = hasLocation ? ReportCityShard.keyFor(latitude, longitude) : ReportCityShard.OTHER_KEY;
+        updates.put("reports/" + reportId + "/city", cityKey);
+        updates.put(ReportCityShard.entryPath(cityKey, reportId), ReportCityShard.entryData(
+                report.child("userId").getValue(String.class), title, category, description, status,
+                report.child("imageUrl").getValue(String.class),
+                hasLocation ? latitude : 0, hasLocation ? longitude : 0, time));
+        return updates;
+    }
+}
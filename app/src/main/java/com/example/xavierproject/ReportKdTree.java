@@ -0,0 +1,280 @@
+package com.example.xavierproject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory 2-d tree over reports for radius and nearest-neighbour lookups.
+ * Points are kept in Web Mercator units, which preserve angles, so a
+ * distance in metres maps to the same distance on both axes near a point.
+ * Reports are inserted and removed one at a time as they arrive; removed
+ * nodes are only marked, and the tree is rebuilt once they pile up or the
+ * tree gets too unbalanced. Longitude wraps around, so lookups near the
+ * antimeridian also find reports on its other side. Not thread safe, use
+ * from the main thread.
+ */
+public class ReportKdTree {
+
+    private static final double EARTH_CIRCUMFERENCE_METERS = 2 * Math.PI * 6371000;
+
+    private final Map<String, Node> nodesById = new HashMap<>();
+    private Node root;
+    private int removedCount;
+
+    /**
+     * Add a report, or update it if already present
+     */
+    public void put(ReportGeoIndex.Entry report) {
+        Node existing = nodesById.get(report.getReportId());
+        if (existing != null) {
+            if (existing.entry.getLatitude() == report.getLatitude()
+                    && existing.entry.getLongitude() == report.getLongitude()) {
+                existing.entry = report;
+                return;
+            }
+            existing.removed = true;
+            removedCount++;
+        }
+        Node node = new Node(report);
+        nodesById.put(report.getReportId(), node);
+        int depth = insert(node);
+        if (depth > 2 * log2(nodesById.size()) + 8) {
+            rebuild();
+        }
+    }
+
+    public void remove(String reportId) {
+        Node node = nodesById.remove(reportId);
+        if (node == null) return;
+        node.removed = true;
+        removedCount++;
+        if (removedCount > nodesById.size()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Bring the tree in line with a full set of reports, touching only what changed
+     */
+    public void sync(Collection<ReportGeoIndex.Entry> reports) {
+        Set<String> present = new HashSet<>();
+        for (ReportGeoIndex.Entry report : reports) {
+            present.add(report.getReportId());
+            put(report);
+        }
+        for (String reportId : new ArrayList<>(nodesById.keySet())) {
+            if (!present.contains(reportId)) {
+                remove(reportId);
+            }
+        }
+    }
+
+    public int size() {
+        return nodesById.size();
+    }
+
+    /**
+     * Reports within a radius, closest first
+     */
+    public List<ReportGeoIndex.Entry> within(double latitude, double longitude, double radiusMeters) {
+        double x = projectX(longitude);
+        double y = projectY(latitude);
+        // A little slack for the scale changing with latitude across the radius
+        double range = metersToUnits(radiusMeters, latitude) * 1.01;
+        List<ReportGeoIndex.Entry> results = new ArrayList<>();
+        collectWithin(root, x, y, range * range, results);
+
+        List<ReportGeoIndex.Entry> matches = new ArrayList<>();
+        for (ReportGeoIndex.Entry entry : results) {
+            if (entry.distanceTo(latitude, longitude) <= radiusMeters) {
+                matches.add(entry);
+            }
+        }
+        Collections.sort(matches, (a, b) -> Double.compare(
+                a.distanceTo(latitude, longitude), b.distanceTo(latitude, longitude)));
+        return matches;
+    }
+
+    /**
+     * The k reports closest to a point, closest first
+     */
+    public List<ReportGeoIndex.Entry> nearest(double latitude, double longitude, int k) {
+        if (k <= 0) return new ArrayList<>();
+        double x = projectX(longitude);
+        double y = projectY(latitude);
+        // Max-heap on distance, holding the best k so far
+        PriorityQueue<Candidate> best = new PriorityQueue<>(k, (a, b) -> Double.compare(b.distance, a.distance));
+        collectNearest(root, x, y, k, best);
+
+        List<Candidate> sorted = new ArrayList<>(best);
+        Collections.sort(sorted, (a, b) -> Double.compare(a.distance, b.distance));
+        List<ReportGeoIndex.Entry> results = new ArrayList<>(sorted.size());
+        for (Candidate candidate : sorted) {
+            results.add(candidate.node.entry);
+        }
+        return results;
+    }
+
+    private void collectWithin(Node node, double x, double y, double rangeSquared, List<ReportGeoIndex.Entry> out) {
+        while (node != null) {
+            double dx = wrapX(node.x - x);
+            double dy = node.y - y;
+            if (!node.removed && dx * dx + dy * dy <= rangeSquared) {
+                out.add(node.entry);
+            }
+            boolean nearLeft = node.vertical ? x < node.x : y < node.y;
+            double gap = farSideGap(node, x, y);
+            if (gap * gap <= rangeSquared) {
+                collectWithin(nearLeft ? node.right : node.left, x, y, rangeSquared, out);
+            }
+            node = nearLeft ? node.left : node.right;
+        }
+    }
+
+    private void collectNearest(Node node, double x, double y, int k, PriorityQueue<Candidate> best) {
+        if (node == null) return;
+        double dx = wrapX(node.x - x);
+        double dy = node.y - y;
+        if (!node.removed) {
+            double distance = dx * dx + dy * dy;
+            if (best.size() < k) {
+                best.add(new Candidate(node, distance));
+            } else if (distance < best.peek().distance) {
+                best.poll();
+                best.add(new Candidate(node, distance));
+            }
+        }
+        boolean nearLeft = node.vertical ? x < node.x : y < node.y;
+        collectNearest(nearLeft ? node.left : node.right, x, y, k, best);
+        double gap = farSideGap(node, x, y);
+        if (best.size() < k || gap * gap < best.peek().distance) {
+            collectNearest(nearLeft ? node.right : node.left, x, y, k, best);
+        }
+    }
+
+    /**
+     * Shortest distance from the query point to the side of a node's split
+     * it isn't on. Left of a vertical split reaches x = 0 and right of it
+     * reaches x = 1, which are the same meridian, so that side may be closer
+     * the other way round the world.
+     */
+    private static double farSideGap(Node node, double x, double y) {
+        if (!node.vertical) return Math.abs(node.y - y);
+        return x < node.x ? Math.min(node.x - x, x) : Math.min(x - node.x, 1 - x);
+    }
+
+    /**
+     * Difference in x the short way round the world
+     */
+    private static double wrapX(double dx) {
+        if (dx > 0.5) return dx - 1;
+        if (dx < -0.5) return dx + 1;
+        return dx;
+    }
+
+    /**
+     * @return Depth the node was inserted at
+     */
+    private int insert(Node node) {
+        if (root == null) {
+            node.vertical = true;
+            root = node;
+            return 0;
+        }
+        Node parent = root;
+        int depth = 1;
+        while (true) {
+            boolean goLeft = parent.vertical ? node.x < parent.x : node.y < parent.y;
+            Node child = goLeft ? parent.left : parent.right;
+            if (child == null) {
+                node.vertical = !parent.vertical;
+                if (goLeft) parent.left = node; else parent.right = node;
+                return depth;
+            }
+            parent = child;
+            depth++;
+        }
+    }
+
+    /**
+     * Rebuild a balanced tree from the live nodes, dropping removed ones
+     */
+    private void rebuild() {
+        List<Node> live = new ArrayList<>(nodesById.values());
+        for (Node node : live) {
+            node.left = null;
+            node.right = null;
+        }
+        root = build(live, 0, live.size(), true);
+        removedCount = 0;
+    }
+
+    private Node build(List<Node> nodes, int from, int to, boolean vertical) {
+        if (from >= to) return null;
+        List<Node> slice = nodes.subList(from, to);
+        Collections.sort(slice, vertical
+                ? (a, b) -> Double.compare(a.x, b.x)
+                : (a, b) -> Double.compare(a.y, b.y));
+        int mid = (from + to) >>> 1;
+        // Equal keys go right, matching insert()
+        double key = vertical ? nodes.get(mid).x : nodes.get(mid).y;
+        while (mid > from && (vertical ? nodes.get(mid - 1).x : nodes.get(mid - 1).y) == key) {
+            mid--;
+        }
+        Node node = nodes.get(mid);
+        node.vertical = vertical;
+        node.left = build(nodes, from, mid, !vertical);
+        node.right = build(nodes, mid + 1, to, !vertical);
+        return node;
+    }
+
+    private static int log2(int n) {
+        return 31 - Integer.numberOfLeadingZeros(Math.max(1, n));
+    }
+
+    private static double metersToUnits(double meters, double latitude) {
+        return meters / (EARTH_CIRCUMFERENCE_METERS * Math.cos(Math.toRadians(latitude)));
+    }
+
+    private static double projectX(double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    private static double projectY(double latitude) {
+        double sin = Math.sin(Math.toRadians(Math.max(-85, Math.min(85, latitude))));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    private static class Node {
+        final double x;
+        final double y;
+        ReportGeoIndex.Entry entry;
+        boolean vertical;
+        boolean removed;
+        Node left;
+        Node right;
+
+        Node(ReportGeoIndex.Entry entry) {
+            this.entry = entry;
+            this.x = projectX(entry.getLongitude());
+            this.y = projectY(entry.getLatitude());
+        }
+    }
+
+    private static class Candidate {
+        final Node node;
+        final double distance;
+
+        Candidate(Node node, double distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.xavierproject;
+
+import android.util.Log;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Markers currently on the map, keyed by report id (or cluster key).
+ * Applying a new set of specs only adds, moves, restyles or removes the
+ * markers that differ, instead of clearing the map and starting over.
+ */
+public class ReportMarkerStore {
+
+    private static final String TAG = "ReportMarkerStore";
+
+    private final GoogleMap map;
+    private final Map<String, Tracked> markers = new HashMap<>();
+
+    public ReportMarkerStore(GoogleMap map) {
+        this.map = map;
+    }
+
+    /**
+     * Make the map show exactly these markers. Call on the main thread.
+     */
+    public void apply(Collection<Spec> specs) {
+        Map<String, Spec> wanted = new HashMap<>();
+        for (Spec spec : specs) {
+            wanted.put(spec.key, spec);
+        }
+
+        int added = 0, moved = 0, restyled = 0, removed = 0;
+
+        Iterator<Map.Entry<String, Tracked>> iterator = markers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Tracked> entry = iterator.next();
+            if (!wanted.containsKey(entry.getKey())) {
+                entry.getValue().marker.remove();
+                iterator.remove();
+                removed++;
+            }
+        }
+
+        for (Spec spec : wanted.values()) {
+            Tracked tracked = markers.get(spec.key);
+            if (tracked == null) {
+                Marker marker = map.addMarker(new MarkerOptions()
+                        .position(spec.position)
+                        .title(spec.title)
+                        .snippet(spec.snippet)
+                        .icon(spec.icon)
+                        // Report and cluster icons are round, centre them on the spot
+                        .anchor(0.5f, 0.5f));
+                if (marker != null) {
+                    marker.setTag(spec.tag);
+                    markers.put(spec.key, new Tracked(marker, spec));
+                    added++;
+                }
+                continue;
+            }
+
+            Marker marker = tracked.marker;
+            Spec current = tracked.spec;
+            if (!spec.position.equals(current.position)) {
+                marker.setPosition(spec.position);
+                moved++;
+            }
+            boolean textChanged = !equals(spec.title, current.title) || !equals(spec.snippet, current.snippet);
+            if (textChanged) {
+                marker.setTitle(spec.title);
+                marker.setSnippet(spec.snippet);
+            }
+            if (!equals(spec.styleKey, current.styleKey)) {
+                marker.setIcon(spec.icon);
+            }
+            if (textChanged || !equals(spec.styleKey, current.styleKey)) {
+                restyled++;
+                // Refresh an open info window so it doesn't show stale text
+                if (marker.isInfoWindowShown()) {
+                    marker.showInfoWindow();
+                }
+            }
+            marker.setTag(spec.tag);
+            tracked.spec = spec;
+        }
+
+        if (added + moved + restyled + removed > 0) {
+            Log.d(TAG, "Markers: +" + added + " ~" + moved + " moved, " + restyled + " restyled, -" + removed
+                    + " (" + markers.size() + " total)");
+        }
+    }
+
+    public int size() {
+        return markers.size();
+    }
+
+    /**
+     * Remove every marker this store added
+     */
+    public void clear() {
+        for (Tracked tracked : markers.values()) {
+            tracked.marker.remove();
+        }
+        markers.clear();
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static class Tracked {
+        final Marker marker;
+        Spec spec;
+
+        Tracked(Marker marker, Spec spec) {
+            this.marker = marker;
+            this.spec = spec;
+        }
+    }
+
+    /**
+     * What one marker should look like
+     */
+    public static class Spec {
+        final String key;
+        final LatLng position;
+        final String title;
+        final String snippet;
+        // Icons can't be compared, markers are only re-iconed when this changes
+        final String styleKey;
+        final BitmapDescriptor icon;
+        final Object tag;
+
+        public Spec(String key, LatLng position, String title, String snippet,
+                    String styleKey, BitmapDescriptor icon, Object tag) {
+            this.key = key;
+            this.position = position;
+            this.title = title;
+            this.snippet = snippet;
+            this.styleKey = styleKey;
+            this.icon = icon;
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package com.example.xavierproject;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.lifecycle.LifecycleOwner;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable outbox for complaint submissions. Every report is journaled to
+ * disk before anything touches the network, then drained either right away
+ * or later by {@link ReportOutboxWorker} with exponential backoff.
+ */
+public class ReportOutbox {
+
+    private static final String TAG = "ReportOutbox";
+    private static final String OUTBOX_DIR = "report_outbox";
+    private static final String SYNC_WORK_NAME = "report_outbox_sync";
+    public static final String UPLOAD_PRESET = "XavierProject";
+
+    private static final long UPLOAD_TIMEOUT_MINUTES = 10;
+    private static final long WRITE_TIMEOUT_SECONDS = 30;
+    private static final long INITIAL_BACKOFF_SECONDS = 30;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static ReportOutbox instance;
+
+    private final Context context;
+    private final File outboxDir;
+    private final DatabaseReference databaseRef;
+    private final DatabaseReference reportsRef;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Set<String> inFlight = new HashSet<>();
+    // Uploads started while the form is still being filled in, keyed by picked URI
+    private final Map<String, ImageUpload> prefetched = new HashMap<>();
+
+    public interface SubmitCallback {
+        void onProgress(UploadProgress progress);
+        void onSubmitted(String reportId);
+        void onQueued(String reason);
+        void onError(String error);
+    }
+
+    public static synchronized ReportOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReportOutbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ReportOutbox(Context context) {
+        this.context = context;
+        this.outboxDir = new File(context.getFilesDir(), OUTBOX_DIR);
+        this.databaseRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app").getReference();
+        this.reportsRef = databaseRef.child("reports");
+    }
+
+    /**
+     * Allocate the Firebase key a new report will be written under
+     */
+    public String newReportId() {
+        return reportsRef.push().getKey();
+    }
+
+    /**
+     * Start uploading a picked photo before the report is submitted. Call on the main thread.
+     * @param imageUri Picked image
+     * @param owner The upload is cancelled when the owner is destroyed
+     */
+    public void prefetch(Uri imageUri, LifecycleOwner owner) {
+        String key = imageUri.toString();
+        synchronized (prefetched) {
+            ImageUpload existing = prefetched.get(key);
+            if (existing != null && !existing.hasFailed()) return;
+        }
+
+        ImageUpload upload = new ImageUpload(-1);
+        upload.handle = CloudinaryHelper.uploadImageChunked(context, imageUri, UPLOAD_PRESET,
+                CloudinaryHelper.DEFAULT_CHUNK_SIZE, UploadManager.Priority.INTERACTIVE, upload);
+        if (upload.handle == null) return;
+
+        synchronized (prefetched) {
+            prefetched.put(key, upload);
+        }
+        upload.handle.cancelOnDestroy(owner);
+    }
+
+    /**
+     * Cancel the prefetch of a photo the user removed from the form
+     */
+    public void cancelPrefetch(Uri imageUri) {
+        ImageUpload upload = takePrefetched(imageUri.toString());
+        if (upload != null && upload.handle != null) {
+            upload.handle.cancel();
+        }
+    }
+
+    /**
+     * Journal a report and try to send it immediately. The work continues
+     * if the caller goes away, and falls back to background sync on failure.
+     * @param report Report with its form fields and location filled in
+     * @param imageUris Picked images, copied into the outbox before uploading
+     * @param owner The upload is cancelled when the owner is destroyed and left to background sync
+     * @param callback Results, delivered on the main thread
+     */
+    public void submit(PendingReport report, List<Uri> imageUris, LifecycleOwner owner, SubmitCallback callback) {
+        List<Uri> uris = new ArrayList<>(imageUris);
+        executor.execute(() -> {
+            try {
+                enqueue(report, uris);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to journal report: " + e.getMessage());
+                final String errorMsg = "Failed to save Complaint: " + e.getMessage();
+                mainHandler.post(() -> callback.onError(errorMsg));
+                return;
+            }
+
+            if (deliver(report, UploadManager.Priority.INTERACTIVE, owner, callback)) {
+                mainHandler.post(() -> callback.onSubmitted(report.getReportId()));
+            } else {
+                scheduleSync();
+                mainHandler.post(() -> callback.onQueued("Complaint saved. It will be submitted automatically when you're back online."));
+            }
+        });
+    }
+
+    /**
+     * Send every journaled report. Blocks, call from a background thread.
+     * @return true if the outbox is now empty
+     */
+    public boolean drainAll() {
+        boolean allDelivered = true;
+        for (PendingReport report : loadPending()) {
+            if (!deliver(report, UploadManager.Priority.BACKGROUND, null, null)) {
+                allDelivered = false;
+            }
+        }
+        return allDelivered;
+    }
+
+    public boolean hasPending() {
+        File[] files = outboxDir.listFiles((dir, name) -> name.endsWith(".json"));
+        return files != null && files.length > 0;
+    }
+
+    /**
+     * Ask WorkManager to drain the outbox once the network is available
+     */
+    public void scheduleSync() {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(ReportOutboxWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(SYNC_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    /**
+     * Copy the images into the outbox and write the journal entry
+     */
+    private void enqueue(PendingReport report, List<Uri> imageUris) throws IOException {
+        if (!outboxDir.exists() && !outboxDir.mkdirs()) {
+            throw new IOException("Could not create outbox directory");
+        }
+
+        // Picker URIs don't outlive the process, so the outbox keeps its own copies
+        for (int i = 0; i < imageUris.size(); i++) {
+            Uri imageUri = imageUris.get(i);
+            String name = report.getReportId() + "_" + i;
+            // Same options as the form's prefetch, so both end up with the same output
+            ImagePreprocessor.Result processed = CloudinaryHelper.preprocess(context, imageUri);
+            File imageFile;
+            if (processed != null) {
+                File processedFile = new File(processed.getUri().getPath());
+                String extension = processed.getMimeType().equals("image/webp") ? ".webp" : ".jpg";
+                imageFile = new File(outboxDir, name + extension);
+                // Copied, not moved: the form's upload prefetch may be reading the same output
+                copy(new FileInputStream(processedFile), imageFile);
+            } else {
+                imageFile = new File(outboxDir, name + ".jpg");
+                copy(context.getContentResolver().openInputStream(imageUri), imageFile);
+            }
+            report.addImage(new PendingReport.Image(imageUri.toString(), imageFile.getAbsolutePath()));
+        }
+
+        save(report);
+        Log.d(TAG, "Report journaled: " + report.getReportId());
+    }
+
+    /**
+     * Upload any images still missing, then write the report. Blocks.
+     */
+    private boolean deliver(PendingReport report, UploadManager.Priority priority,
+                            LifecycleOwner owner, SubmitCallback callback) {
+        synchronized (inFlight) {
+            if (!inFlight.add(report.getReportId())) {
+                // Already being sent by the other path
+                return false;
+            }
+        }
+
+        try {
+            report.incrementAttempts();
+
+            if (!report.areImagesUploaded()) {
+                // A lost local copy can't be uploaded, send the report with the photos that are left
+                int missing = 0;
+                for (PendingReport.Image image : new ArrayList<>(report.getImages())) {
+                    if (!image.isUploaded() && (image.getPath() == null || !new File(image.getPath()).exists())) {
+                        report.removeImage(image);
+                        missing++;
+                    }
+                }
+                if (missing > 0) {
+                    Log.e(TAG, missing + " image(s) missing for report " + report.getReportId() + ", sending without them");
+                    save(report);
+                    final String message = missing == 1
+                            ? "A photo of your complaint could not be found and was left out"
+                            : missing + " photos of your complaint could not be found and were left out";
+                    mainHandler.post(() -> Toast.makeText(context, message, Toast.LENGTH_LONG).show());
+                }
+
+                boolean uploaded = uploadImages(report, priority, owner, callback);
+                // Record the URLs before writing, a retry must not upload those images again
+                save(report);
+                if (!uploaded) {
+                    return false;
+                }
+            }
+
+            // One multi-path update, readers never see a report without its images.
+            // Writing the same data under the pre-allocated key is idempotent.
+            Tasks.await(databaseRef.updateChildren(report.toUpdates()),
+                    WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            remove(report);
+            Log.d(TAG, "Report delivered: " + report.getReportId());
+            return true;
+        } catch (Exception e) {
+            Log.w(TAG, "Report " + report.getReportId() + " not delivered (attempt "
+                    + report.getAttempts() + "): " + e.getMessage());
+            try {
+                save(report);
+            } catch (IOException ignored) {
+                // The previous journal entry is still on disk
+            }
+            return false;
+        } finally {
+            synchronized (inFlight) {
+                inFlight.remove(report.getReportId());
+            }
+        }
+    }
+
+    /**
+     * Upload every image that has no URL yet, in parallel up to the UploadManager's limit.
+     * Photos prefetched from the form are awaited instead of sent again.
+     * @return true if all images are uploaded
+     */
+    private boolean uploadImages(PendingReport report, UploadManager.Priority priority,
+                                 LifecycleOwner owner, SubmitCallback callback) throws InterruptedException {
+        List<PendingReport.Image> pending = new ArrayList<>();
+        List<ImageUpload> uploads = new ArrayList<>();
+        for (PendingReport.Image image : report.getImages()) {
+            if (image.isUploaded()) continue;
+
+            ImageUpload upload = image.getSourceUri() != null ? takePrefetched(image.getSourceUri()) : null;
+            if (upload == null || upload.hasFailed()) {
+                File imageFile = new File(image.getPath());
+                upload = new ImageUpload(imageFile.length());
+                upload.handle = CloudinaryHelper.uploadImageChunked(context, Uri.fromFile(imageFile),
+                        UPLOAD_PRESET, CloudinaryHelper.DEFAULT_CHUNK_SIZE, priority, upload);
+                if (upload.handle != null && owner != null) {
+                    final UploadManager.Handle handle = upload.handle;
+                    mainHandler.post(() -> handle.cancelOnDestroy(owner));
+                }
+            }
+            pending.add(image);
+            uploads.add(upload);
+        }
+
+        if (callback != null) {
+            UploadProgressTracker.Listener listener = progress -> callback.onProgress(combine(uploads));
+            for (ImageUpload upload : uploads) {
+                upload.listener = listener;
+            }
+        }
+
+        boolean allUploaded = true;
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(UPLOAD_TIMEOUT_MINUTES);
+        for (int i = 0; i < uploads.size(); i++) {
+            ImageUpload upload = uploads.get(i);
+            long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            if (!upload.done.await(remaining, TimeUnit.MILLISECONDS)) {
+                if (upload.handle != null) upload.handle.cancel();
+                allUploaded = false;
+            } else if (upload.url != null) {
+                pending.get(i).setUploaded(upload.url, upload.publicId);
+            } else {
+                allUploaded = false;
+            }
+        }
+        return allUploaded;
+    }
+
+    /**
+     * Sum the progress of a report's parallel uploads
+     */
+    private static UploadProgress combine(List<ImageUpload> uploads) {
+        long bytesSent = 0;
+        long totalBytes = 0;
+        long bytesPerSecond = 0;
+        boolean complete = true;
+        for (ImageUpload upload : uploads) {
+            UploadProgress progress = upload.progress;
+            long total = progress != null ? progress.getTotalBytes() : upload.expectedBytes;
+            if (total <= 0 || totalBytes < 0) {
+                totalBytes = -1;
+            } else {
+                totalBytes += total;
+            }
+            if (progress != null) {
+                bytesSent += progress.getBytesSent();
+                bytesPerSecond += progress.getBytesPerSecond();
+            }
+            complete &= progress != null && progress.isComplete();
+        }
+        return new UploadProgress(bytesSent, totalBytes, bytesPerSecond, complete);
+    }
+
+    private ImageUpload takePrefetched(String sourceUri) {
+        synchronized (prefetched) {
+            return prefetched.remove(sourceUri);
+        }
+    }
+
+    private List<PendingReport> loadPending() {
+        List<PendingReport> reports = new ArrayList<>();
+        File[] files = outboxDir.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null) return reports;
+
+        for (File file : files) {
+            try (InputStream inputStream = new FileInputStream(file)) {
+                byte[] data = new byte[(int) file.length()];
+                int offset = 0;
+                while (offset < data.length) {
+                    int read = inputStream.read(data, offset, data.length - offset);
+                    if (read == -1) break;
+                    offset += read;
+                }
+                reports.add(PendingReport.fromJson(new JSONObject(new String(data, 0, offset, UTF_8))));
+            } catch (Exception e) {
+                Log.e(TAG, "Skipping unreadable outbox entry " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        return reports;
+    }
+
+    private synchronized void save(PendingReport report) throws IOException {
+        File entryFile = new File(outboxDir, report.getReportId() + ".json");
+        File tempFile = new File(outboxDir, report.getReportId() + ".json.tmp");
+        try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+            outputStream.write(report.toJson().toString().getBytes(UTF_8));
+            outputStream.getFD().sync();
+        } catch (org.json.JSONException e) {
+            throw new IOException(e);
+        }
+        if (!tempFile.renameTo(entryFile)) {
+            throw new IOException("Could not write outbox entry");
+        }
+    }
+
+    private synchronized void remove(PendingReport report) {
+        new File(outboxDir, report.getReportId() + ".json").delete();
+        for (PendingReport.Image image : report.getImages()) {
+            if (image.getPath() != null) {
+                new File(image.getPath()).delete();
+            }
+        }
+    }
+
+    private static void copy(InputStream inputStream, File target) throws IOException {
+        if (inputStream == null) {
+            throw new IOException("Failed to open input stream from URI");
+        }
+        try (InputStream in = inputStream; OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+            }
+        }
+    }
+
+    /**
+     * One image upload, awaited by the outbox thread. Callbacks arrive on the main thread.
+     */
+    private static class ImageUpload implements CloudinaryHelper.CloudinaryUploadCallback {
+        final CountDownLatch done = new CountDownLatch(1);
+        final long expectedBytes;
+        UploadManager.Handle handle;
+        volatile UploadProgress progress;
+        volatile UploadProgressTracker.Listener listener;
+        volatile String url;
+        volatile String publicId;
+
+        ImageUpload(long expectedBytes) {
+            this.expectedBytes = expectedBytes;
+        }
+
+        boolean hasFailed() {
+            return done.getCount() == 0 && url == null;
+        }
+
+        @Override
+        public void onStart() {
+        }
+
+        @Override
+        public void onProgress(UploadProgress progress) {
+            this.progress = progress;
+            UploadProgressTracker.Listener current = listener;
+            if (current != null) current.onProgress(progress);
+        }
+
+        @Override
+        public void onSuccess(String imageUrl, String publicId) {
+            this.url = imageUrl;
+            this.publicId = publicId;
+            done.countDown();
+        }
+
+        @Override
+        public void onError(String error) {
+            Log.w(TAG, "Image upload failed: " + error);
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.xavierproject;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Drains the {@link ReportOutbox} in the background. WorkManager retries
+ * with exponential backoff until every journaled report is delivered.
+ */
+public class ReportOutboxWorker extends Worker {
+
+    private static final String TAG = "ReportOutboxWorker";
+
+    public ReportOutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        ReportOutbox outbox = ReportOutbox.getInstance(getApplicationContext());
+        if (outbox.drainAll()) {
+            Log.d(TAG, "Outbox drained");
+            return Result.success();
+        }
+
+        Log.d(TAG, "Outbox still has pending reports, retrying later (run " + getRunAttemptCount() + ")");
+        return Result.retry();
+    }
+}
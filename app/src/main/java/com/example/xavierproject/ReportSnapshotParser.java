@@ -0,0 +1,171 @@
+package com.example.xavierproject;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns report snapshots into model objects on a background thread and
+ * hands back only the finished list, so large listeners never parse on
+ * the main thread. All parsers share one thread, which keeps results in
+ * the order their snapshots arrived.
+ */
+public class ReportSnapshotParser {
+
+    private static final String TAG = "ReportSnapshotParser";
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    // Only used on the parser thread, so one instance is enough
+    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+
+    private final AtomicInteger cancelGeneration = new AtomicInteger();
+    private final AtomicInteger latestGeneration = new AtomicInteger();
+
+    public interface RowParser<T> {
+        /**
+         * Parse one child, or return null to skip it. Runs on the parser thread.
+         */
+        T parse(DataSnapshot child);
+    }
+
+    public interface Callback<T> {
+        /**
+         * Called on the main thread
+         */
+        void onParsed(List<T> items);
+    }
+
+    /**
+     * Parse every child of a snapshot. Results are delivered in submission order.
+     */
+    public <T> void parse(DataSnapshot snapshot, RowParser<T> parser, Callback<T> callback) {
+        final int cancelId = cancelGeneration.get();
+        EXECUTOR.execute(() -> {
+            if (cancelId != cancelGeneration.get()) return;
+            List<T> items = parseChildren(snapshot, parser);
+            MAIN_HANDLER.post(() -> {
+                if (cancelId == cancelGeneration.get()) {
+                    callback.onParsed(items);
+                }
+            });
+        });
+    }
+
+    /**
+     * Like parse, but a newer call supersedes older ones still waiting, for
+     * listeners where only the latest full snapshot matters
+     */
+    public <T> void parseLatest(DataSnapshot snapshot, RowParser<T> parser, Callback<T> callback) {
+        final int cancelId = cancelGeneration.get();
+        final int latestId = latestGeneration.incrementAndGet();
+        EXECUTOR.execute(() -> {
+            if (cancelId != cancelGeneration.get() || latestId != latestGeneration.get()) return;
+            List<T> items = parseChildren(snapshot, parser);
+            MAIN_HANDLER.post(() -> {
+                if (cancelId == cancelGeneration.get() && latestId == latestGeneration.get()) {
+                    callback.onParsed(items);
+                }
+            });
+        });
+    }
+
+    /**
+     * Run on the main thread once every parse submitted so far has been delivered
+     */
+    public void after(Runnable runnable) {
+        final int cancelId = cancelGeneration.get();
+        EXECUTOR.execute(() -> MAIN_HANDLER.post(() -> {
+            if (cancelId == cancelGeneration.get()) {
+                runnable.run();
+            }
+        }));
+    }
+
+    /**
+     * Drop every pending result, call when the listener goes away
+     */
+    public void cancel() {
+        cancelGeneration.incrementAndGet();
+    }
+
+    private static <T> List<T> parseChildren(DataSnapshot snapshot, RowParser<T> parser) {
+        long start = SystemClock.elapsedRealtime();
+        List<T> items = new ArrayList<>((int) snapshot.getChildrenCount());
+        for (DataSnapshot child : snapshot.getChildren()) {
+            try {
+                T item = parser.parse(child);
+                if (item != null) {
+                    items.add(item);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error parsing " + child.getKey() + ": " + e.getMessage());
+            }
+        }
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        if (elapsed > 50) {
+            Log.d(TAG, "Parsed " + items.size() + " items in " + elapsed + " ms");
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Complaint for the officials' queue. Not modified after parsing.
+     * Runs on the parser thread.
+     */
+    public static Complaint parseComplaint(DataSnapshot reportSnapshot) {
+        String reportId = reportSnapshot.getKey();
+        String category = reportSnapshot.child("category").getValue(String.class);
+        String description = reportSnapshot.child("description").getValue(String.class);
+        String status = reportSnapshot.child("status").getValue(String.class);
+        String title = reportSnapshot.child("title").getValue(String.class);
+        String userName = reportSnapshot.child("userName").getValue(String.class);
+
+        // Reports from the app keep coordinates under "location", older ones at the top level
+        DataSnapshot location = reportSnapshot.child("location");
+        Double latitude = location.child("latitude").getValue(Double.class);
+        Double longitude = location.child("longitude").getValue(Double.class);
+        if (latitude == null || longitude == null) {
+            latitude = reportSnapshot.child("latitude").getValue(Double.class);
+            longitude = reportSnapshot.child("longitude").getValue(Double.class);
+        }
+        Long timestamp = reportSnapshot.child("timestamp").getValue(Long.class);
+
+        Complaint complaint = new Complaint();
+        complaint.setReportId(reportId != null ? reportId : "N/A");
+        complaint.setId(userName != null ? userName : "Anonymous");
+        complaint.setTitle(title != null ? title : "Untitled");
+        complaint.setDescription(description != null ? description : "No description");
+        complaint.setStatus(status != null ? status : "pending");
+        complaint.setCategory(category != null ? category : "Other");
+        complaint.setImageUrl(reportSnapshot.child("imageUrl").getValue(String.class));
+        complaint.setUserId(reportSnapshot.child("userId").getValue(String.class));
+        complaint.setUserName(userName != null ? userName : "Anonymous");
+
+        if (latitude != null) complaint.setLatitude(latitude);
+        if (longitude != null) complaint.setLongitude(longitude);
+        if (timestamp != null) {
+            complaint.setTimestamp(timestamp);
+            complaint.setDate(DATE_FORMAT.format(new Date(timestamp)));
+        } else {
+            complaint.setDate("N/A");
+        }
+
+        complaint.setLocation(category != null ? category : "Unknown Location");
+        return complaint;
+    }
+}
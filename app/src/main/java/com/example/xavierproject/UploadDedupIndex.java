@@ -0,0 +1,116 @@
+package com.example.xavierproject;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Remembers which image contents have already been uploaded, keyed by
+ * SHA-256, so resubmitting the same photo reuses the Cloudinary asset
+ * instead of uploading it again.
+ */
+public class UploadDedupIndex {
+
+    private static final String TAG = "UploadDedupIndex";
+    private static final String PREFS_NAME = "UploadDedup";
+
+    // Forget old entries, the asset may have been cleaned up on Cloudinary since
+    private static final long MAX_ENTRY_AGE_MS = 30 * 24 * 60 * 60 * 1000L;
+
+    private final SharedPreferences prefs;
+
+    public UploadDedupIndex(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Get the asset uploaded earlier for this content hash
+     * @return Uploaded asset, or null if this content hasn't been uploaded
+     */
+    public synchronized Entry find(String hash) {
+        String json = prefs.getString(hash, null);
+        if (json == null) return null;
+
+        try {
+            JSONObject object = new JSONObject(json);
+            if (System.currentTimeMillis() - object.optLong("uploadedAt", 0) < MAX_ENTRY_AGE_MS) {
+                return new Entry(object.getString("url"), object.getString("publicId"));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Discarding unreadable index entry: " + e.getMessage());
+        }
+        prefs.edit().remove(hash).apply();
+        return null;
+    }
+
+    /**
+     * Record a finished upload
+     */
+    public synchronized void record(String hash, String url, String publicId) {
+        try {
+            JSONObject object = new JSONObject();
+            object.put("url", url);
+            object.put("publicId", publicId);
+            object.put("uploadedAt", System.currentTimeMillis());
+            prefs.edit().putString(hash, object.toString()).apply();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to record upload: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hash the content behind a URI
+     * @return Lowercase hex SHA-256, or null if the content couldn't be read
+     */
+    public static String sha256(ContentResolver contentResolver, Uri uri) {
+        try (InputStream inputStream = contentResolver.openInputStream(uri)) {
+            if (inputStream == null) return null;
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Log.w(TAG, "Could not hash image: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * An asset already on Cloudinary
+     */
+    public static class Entry {
+        private final String url;
+        private final String publicId;
+
+        Entry(String url, String publicId) {
+            this.url = url;
+            this.publicId = publicId;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getPublicId() {
+            return publicId;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.xavierproject;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+
+/**
+ * Runs uploads on a small bounded pool. Interactive uploads are taken
+ * from the queue ahead of background retries, and every upload returns
+ * a {@link Handle} that can cancel, pause or resume it.
+ */
+public class UploadManager {
+
+    private static final String TAG = "UploadManager";
+    private static final int DEFAULT_MAX_CONCURRENT_UPLOADS = 3;
+
+    private static UploadManager instance;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Queue order, lower ordinal runs first
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        PAUSED,
+        CANCELLED,
+        FINISHED
+    }
+
+    /**
+     * Work performed for one upload
+     */
+    public interface UploadJob {
+        /**
+         * Run the upload on a pool thread
+         * @return true if a final result was delivered, false if it stopped because it was paused or cancelled
+         */
+        boolean run(Handle handle);
+
+        /**
+         * Called once when the upload is cancelled before delivering a result
+         */
+        void onCancelled();
+
+        /**
+         * Called once when run throws instead of delivering a result
+         */
+        void onFailed(Exception e);
+    }
+
+    public static synchronized UploadManager getInstance() {
+        if (instance == null) {
+            instance = new UploadManager();
+        }
+        return instance;
+    }
+
+    private UploadManager() {
+        executor = new ThreadPoolExecutor(DEFAULT_MAX_CONCURRENT_UPLOADS, DEFAULT_MAX_CONCURRENT_UPLOADS,
+                30, TimeUnit.SECONDS, new PriorityBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Change how many uploads run at once, e.g. fewer on metered or slow networks
+     */
+    public synchronized void setMaxConcurrentUploads(int maxConcurrentUploads) {
+        int limit = Math.max(1, maxConcurrentUploads);
+        // Raise the maximum first, the core size may never exceed it
+        if (limit > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(limit);
+            executor.setCorePoolSize(limit);
+        } else {
+            executor.setCorePoolSize(limit);
+            executor.setMaximumPoolSize(limit);
+        }
+        Log.d(TAG, "Max concurrent uploads: " + limit);
+    }
+
+    /**
+     * Queue an upload
+     * @param priority Where the upload goes in the queue
+     * @param job Work to run
+     * @return Handle to control the upload
+     */
+    public Handle submit(Priority priority, UploadJob job) {
+        Handle handle = new Handle(priority, job);
+        handle.enqueue();
+        return handle;
+    }
+
+    /**
+     * Controls one queued or running upload
+     */
+    public class Handle {
+        private final Priority priority;
+        private final UploadJob job;
+
+        private State state = State.QUEUED;
+        private Task currentTask;
+        private Call currentCall;
+        private boolean running;
+        private boolean resumeRequested;
+
+        Handle(Priority priority, UploadJob job) {
+            this.priority = priority;
+            this.job = job;
+        }
+
+        public synchronized State getState() {
+            return state;
+        }
+
+        /**
+         * True once the upload was paused or cancelled, jobs should stop at the next opportunity
+         */
+        public synchronized boolean isStopped() {
+            return state == State.PAUSED || state == State.CANCELLED;
+        }
+
+        /**
+         * Register the in-flight HTTP call so cancel/pause can abort it
+         * @return false if the upload was stopped and the call must not be executed
+         */
+        public synchronized boolean track(Call call) {
+            if (isStopped()) {
+                return false;
+            }
+            currentCall = call;
+            return true;
+        }
+
+        public void cancel() {
+            boolean notify;
+            synchronized (this) {
+                if (state == State.CANCELLED || state == State.FINISHED) return;
+                // A running job reports back through Task.run once its call is aborted
+                notify = !running;
+                state = State.CANCELLED;
+                if (currentCall != null) currentCall.cancel();
+            }
+            Log.d(TAG, "Upload cancelled");
+            if (notify) job.onCancelled();
+        }
+
+        /**
+         * Stop the upload, keeping any progress the job persisted
+         */
+        public synchronized void pause() {
+            if (state != State.QUEUED && state != State.RUNNING) return;
+            state = State.PAUSED;
+            resumeRequested = false;
+            if (currentCall != null) currentCall.cancel();
+            Log.d(TAG, "Upload paused");
+        }
+
+        /**
+         * Queue a paused upload again, chunked uploads continue from the last acknowledged chunk
+         */
+        public synchronized void resume() {
+            if (state != State.PAUSED) return;
+            if (running) {
+                // Still winding down, Task.run queues it again on exit
+                resumeRequested = true;
+                return;
+            }
+            enqueue();
+            Log.d(TAG, "Upload resumed");
+        }
+
+        /**
+         * Cancel the upload when the owner is destroyed. Call on the main thread.
+         */
+        public Handle cancelOnDestroy(LifecycleOwner owner) {
+            if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+                cancel();
+                return this;
+            }
+            owner.getLifecycle().addObserver(new LifecycleEventObserver() {
+                @Override
+                public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                    if (event == Lifecycle.Event.ON_DESTROY) {
+                        source.getLifecycle().removeObserver(this);
+                        cancel();
+                    }
+                }
+            });
+            return this;
+        }
+
+        private synchronized void enqueue() {
+            state = State.QUEUED;
+            currentTask = new Task(this, sequence.getAndIncrement());
+            executor.execute(currentTask);
+        }
+
+        /**
+         * Claim the handle for a task taken off the queue
+         */
+        private synchronized boolean start(Task task) {
+            if (currentTask != task || state != State.QUEUED) {
+                // Superseded by a resume, or paused/cancelled while queued
+                return false;
+            }
+            state = State.RUNNING;
+            running = true;
+            return true;
+        }
+
+        /**
+         * @return true if the job must be told it was cancelled
+         */
+        private synchronized boolean finish(boolean delivered) {
+            running = false;
+            currentCall = null;
+            if (delivered || state == State.RUNNING) {
+                state = State.FINISHED;
+                return false;
+            }
+            if (state == State.PAUSED && resumeRequested) {
+                resumeRequested = false;
+                enqueue();
+                return false;
+            }
+            return state == State.CANCELLED;
+        }
+    }
+
+    /**
+     * Queue entry for one run of a handle's job
+     */
+    private static class Task implements Runnable, Comparable<Task> {
+        private final Handle handle;
+        private final long sequence;
+
+        Task(Handle handle, long sequence) {
+            this.handle = handle;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            if (!handle.start(this)) {
+                return;
+            }
+
+            boolean delivered = false;
+            RuntimeException failure = null;
+            try {
+                delivered = handle.job.run(handle);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Upload job failed: " + e.getMessage());
+                failure = e;
+            } finally {
+                // A throw ends the upload, it can't be resumed from where it stopped
+                if (handle.finish(delivered || failure != null)) {
+                    handle.job.onCancelled();
+                } else if (failure != null) {
+                    handle.job.onFailed(failure);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = handle.priority.compareTo(other.handle.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
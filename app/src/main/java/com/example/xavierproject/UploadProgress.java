@@ -0,0 +1,91 @@
+package com.example.xavierproject;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of an upload's progress: bytes on the wire, throughput and ETA
+ */
+public class UploadProgress {
+
+    private final long bytesSent;
+    private final long totalBytes;
+    private final long bytesPerSecond;
+    private final boolean complete;
+
+    public UploadProgress(long bytesSent, long totalBytes, long bytesPerSecond, boolean complete) {
+        this.bytesSent = bytesSent;
+        this.totalBytes = totalBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.complete = complete;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Total size of the upload, or -1 if unknown
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Smoothed upload speed, 0 until enough bytes have been sent to measure it
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Percentage sent, or -1 if the total size is unknown
+     */
+    public int getPercent() {
+        if (totalBytes <= 0) return -1;
+        return (int) Math.min(100, bytesSent * 100 / totalBytes);
+    }
+
+    /**
+     * Estimated time left in milliseconds, or -1 if it can't be estimated yet
+     */
+    public long getEtaMillis() {
+        if (totalBytes <= 0 || bytesPerSecond <= 0) return -1;
+        return Math.max(0, totalBytes - bytesSent) * 1000 / bytesPerSecond;
+    }
+
+    /**
+     * True once the server has accepted the whole upload
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Short status line for the UI, e.g. "Uploading: 42% (1.2 MB/s, 5s left)"
+     */
+    public String describe() {
+        StringBuilder builder = new StringBuilder("Uploading: ");
+        int percent = getPercent();
+        builder.append(percent >= 0 ? percent + "%" : formatBytes(bytesSent));
+
+        if (bytesPerSecond > 0) {
+            builder.append(" (").append(formatBytes(bytesPerSecond)).append("/s");
+            long etaMillis = getEtaMillis();
+            if (etaMillis >= 0) {
+                builder.append(", ").append(Math.max(1, (etaMillis + 999) / 1000)).append("s left");
+            }
+            builder.append(")");
+        }
+        return builder.toString();
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format(Locale.US, "%.1f MB", bytes / (1024f * 1024f));
+        }
+        if (bytes >= 1024) {
+            return (bytes / 1024) + " KB";
+        }
+        return bytes + " B";
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.xavierproject;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Turns raw byte counts from the upload thread into {@link UploadProgress}
+ * updates on the main thread, at most one post every 100ms.
+ */
+public class UploadProgressTracker {
+
+    private static final String TAG = "UploadProgressTracker";
+    private static final long MIN_POST_INTERVAL_MS = 100;
+    private static final long MIN_SAMPLE_INTERVAL_MS = 250;
+    // Weight of the newest throughput sample in the moving average
+    private static final double SMOOTHING = 0.3;
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Receives progress on the main thread
+     */
+    public interface Listener {
+        void onProgress(UploadProgress progress);
+    }
+
+    private final long totalBytes;
+    private final Listener listener;
+    private final long startedAt;
+    private final long startBytes;
+
+    private long bytesSent;
+    private long sampleAt;
+    private long sampleBytes;
+    private double bytesPerSecond;
+    private long lastPostAt;
+    private boolean postPending;
+    private boolean finished;
+
+    /**
+     * @param totalBytes Size of the upload, or -1 if unknown
+     * @param initialBytes Bytes already sent by an earlier attempt, e.g. resumed chunks
+     * @param listener Receives the throttled updates
+     */
+    public UploadProgressTracker(long totalBytes, long initialBytes, Listener listener) {
+        this.totalBytes = totalBytes;
+        this.listener = listener;
+        this.startedAt = SystemClock.elapsedRealtime();
+        this.startBytes = initialBytes;
+        this.bytesSent = initialBytes;
+        this.sampleAt = startedAt;
+        this.sampleBytes = initialBytes;
+    }
+
+    /**
+     * Record the absolute number of bytes sent so far. Called from the upload thread.
+     */
+    public void update(long bytesSent) {
+        synchronized (this) {
+            if (finished) return;
+            long now = SystemClock.elapsedRealtime();
+            this.bytesSent = bytesSent;
+
+            if (now - sampleAt >= MIN_SAMPLE_INTERVAL_MS) {
+                // A retried request starts counting again from its offset, skip that sample
+                if (bytesSent >= sampleBytes) {
+                    double sample = (bytesSent - sampleBytes) * 1000.0 / (now - sampleAt);
+                    bytesPerSecond = bytesPerSecond == 0 ? sample
+                            : SMOOTHING * sample + (1 - SMOOTHING) * bytesPerSecond;
+                }
+                sampleAt = now;
+                sampleBytes = bytesSent;
+            }
+
+            if (postPending || now - lastPostAt < MIN_POST_INTERVAL_MS) {
+                return;
+            }
+            postPending = true;
+            lastPostAt = now;
+        }
+        mainHandler.post(this::dispatch);
+    }
+
+    /**
+     * Post a final 100% update, bypassing the throttle
+     */
+    public void complete() {
+        final UploadProgress progress;
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+            if (totalBytes > 0) bytesSent = totalBytes;
+            progress = snapshot();
+
+            long elapsed = Math.max(1, SystemClock.elapsedRealtime() - startedAt);
+            long sent = bytesSent - startBytes;
+            Log.i(TAG, "Uploaded " + sent + " bytes in " + elapsed + " ms ("
+                    + UploadProgress.formatBytes(sent * 1000 / elapsed) + "/s)");
+        }
+        mainHandler.post(() -> listener.onProgress(progress));
+    }
+
+    private void dispatch() {
+        final UploadProgress progress;
+        synchronized (this) {
+            postPending = false;
+            if (finished) return;
+            progress = snapshot();
+        }
+        listener.onProgress(progress);
+    }
+
+    private UploadProgress snapshot() {
+        return new UploadProgress(bytesSent, totalBytes, (long) bytesPerSecond, finished);
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.xavierproject;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reporter profiles from users/{userId}, cached in memory and across
+ * launches so officials can open a complaint without waiting on a read.
+ * Entries expire after a day, and a user with no profile is cached too,
+ * so their rows don't trigger a read every time they are shown.
+ * Use from the main thread.
+ */
+public class UserProfileCache {
+
+    private static final String TAG = "UserProfileCache";
+    private static final String PREFS_NAME = "UserProfileCache";
+
+    private static final int MEMORY_ENTRIES = 500;
+    private static final long MAX_ENTRY_AGE_MS = 24 * 60 * 60 * 1000L;
+    private static final long MISS_RETRY_MS = 5 * 60 * 1000L;
+
+    private static UserProfileCache instance;
+
+    private final SharedPreferences prefs;
+    private final DatabaseReference usersRef;
+    private final LruCache<String, Entry> memory = new LruCache<>(MEMORY_ENTRIES);
+    // Reads that just failed, e.g. offline, so rebinding rows doesn't retry them every time
+    private final LruCache<String, Long> misses = new LruCache<>(MEMORY_ENTRIES);
+    // Reads in flight, with everyone waiting on each
+    private final Map<String, List<Callback>> pending = new HashMap<>();
+
+    public interface Callback {
+        /**
+         * Called on the main thread, with null if the user has no profile or it couldn't be read
+         */
+        void onProfile(FirebaseAuthHelper.UserProfile profile);
+    }
+
+    public static synchronized UserProfileCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new UserProfileCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private UserProfileCache(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.usersRef = FirebaseDatabase.getInstance("https://bolbharat-b4a8b-default-rtdb.asia-southeast1.firebasedatabase.app")
+                .getReference("users");
+    }
+
+    /**
+     * Whether the user's profile is known, including known to be missing, without any read
+     */
+    public boolean isCached(String userId) {
+        return fresh(userId) != null;
+    }
+
+    /**
+     * Cached email, or null if it isn't known (yet)
+     */
+    public String peekEmail(String userId) {
+        Entry entry = fresh(userId);
+        return entry != null && entry.profile != null ? entry.profile.getEmail() : null;
+    }
+
+    /**
+     * Find a user's profile, from the cache when possible
+     */
+    public void lookup(String userId, Callback callback) {
+        if (userId == null || userId.isEmpty()) {
+            if (callback != null) callback.onProfile(null);
+            return;
+        }
+        Entry entry = fresh(userId);
+        if (entry != null) {
+            if (callback != null) callback.onProfile(entry.profile);
+            return;
+        }
+        if (recentlyMissed(userId)) {
+            if (callback != null) callback.onProfile(null);
+            return;
+        }
+
+        List<Callback> waiting = pending.get(userId);
+        if (waiting != null) {
+            if (callback != null) waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        if (callback != null) waiting.add(callback);
+        pending.put(userId, waiting);
+
+        usersRef.child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                FirebaseAuthHelper.UserProfile profile = null;
+                if (snapshot.exists()) {
+                    profile = new FirebaseAuthHelper.UserProfile();
+                    profile.setUserId(userId);
+                    profile.setEmail(snapshot.child("email").getValue(String.class));
+                    profile.setName(snapshot.child("name").getValue(String.class));
+                } else {
+                    Log.w(TAG, "User not found in database: " + userId);
+                }
+                Entry loaded = new Entry(profile, System.currentTimeMillis());
+                memory.put(userId, loaded);
+                store(userId, loaded);
+                deliver(userId, profile);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Failed to fetch user " + userId + ": " + error.getMessage());
+                misses.put(userId, System.currentTimeMillis());
+                deliver(userId, null);
+            }
+        });
+    }
+
+    /**
+     * Read the profiles of users about to be shown, all at once. Reads for
+     * different users go out together over the one database connection.
+     */
+    public void prefetch(Collection<String> userIds) {
+        int requested = 0;
+        for (String userId : userIds) {
+            if (userId == null || userId.isEmpty() || pending.containsKey(userId)
+                    || fresh(userId) != null || recentlyMissed(userId)) {
+                continue;
+            }
+            lookup(userId, null);
+            requested++;
+        }
+        if (requested > 0) {
+            Log.d(TAG, "Prefetching " + requested + " profiles");
+        }
+    }
+
+    /**
+     * Whether a read of this user failed too recently to try again
+     */
+    private boolean recentlyMissed(String userId) {
+        Long missedAt = misses.get(userId);
+        if (missedAt == null) return false;
+        if (System.currentTimeMillis() - missedAt < MISS_RETRY_MS) return true;
+        misses.remove(userId);
+        return false;
+    }
+
+    private void deliver(String userId, FirebaseAuthHelper.UserProfile profile) {
+        List<Callback> waiting = pending.remove(userId);
+        if (waiting == null) return;
+        for (Callback callback : waiting) {
+            callback.onProfile(profile);
+        }
+    }
+
+    /**
+     * Unexpired entry from memory or, failing that, from the last launches
+     */
+    private Entry fresh(String userId) {
+        if (userId == null) return null;
+        Entry entry = memory.get(userId);
+        if (entry == null) {
+            entry = readStored(userId);
+            if (entry == null) return null;
+            memory.put(userId, entry);
+        }
+        if (System.currentTimeMillis() - entry.savedAt >= MAX_ENTRY_AGE_MS) {
+            memory.remove(userId);
+            return null;
+        }
+        return entry;
+    }
+
+    private Entry readStored(String userId) {
+        String json = prefs.getString(userId, null);
+        if (json == null) return null;
+        try {
+            JSONObject object = new JSONObject(json);
+            long savedAt = object.optLong("savedAt", 0);
+            if (System.currentTimeMillis() - savedAt < MAX_ENTRY_AGE_MS) {
+                FirebaseAuthHelper.UserProfile profile = null;
+                if (object.optBoolean("exists", false)) {
+                    profile = new FirebaseAuthHelper.UserProfile();
+                    profile.setUserId(userId);
+                    profile.setEmail(object.isNull("email") ? null : object.optString("email"));
+                    profile.setName(object.isNull("name") ? null : object.optString("name"));
+                }
+                return new Entry(profile, savedAt);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Discarding unreadable profile entry: " + e.getMessage());
+        }
+        prefs.edit().remove(userId).apply();
+        return null;
+    }
+
+    private void store(String userId, Entry entry) {
+        try {
+            JSONObject object = new JSONObject();
+            object.put("exists", entry.profile != null);
+            if (entry.profile != null) {
+                object.put("email", entry.profile.getEmail() != null ? entry.profile.getEmail() : JSONObject.NULL);
+                object.put("name", entry.profile.getName() != null ? entry.profile.getName() : JSONObject.NULL);
+            }
+            object.put("savedAt", entry.savedAt);
+            prefs.edit().putString(userId, object.toString()).apply();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to store profile: " + e.getMessage());
+        }
+    }
+
+    private static class Entry {
+        // Null if the user has no profile
+        final FirebaseAuthHelper.UserProfile profile;
+        final long savedAt;
+
+        Entry(FirebaseAuthHelper.UserProfile profile, long savedAt) {
+            this.profile = profile;
+            this.savedAt = savedAt;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.xavierproject;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks GeoHash encoding and that cover() never leaves part of the query box out.
+ */
+public class GeoHashTest {
+
+    private static final int PRECISION = 6;
+    private static final int MAX_CELLS = 16;
+
+    @Test
+    public void encode_matchesKnownHash() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("te7u", GeoHash.encode(19.0760, 72.8777, 4));
+    }
+
+    @Test
+    public void bounds_containEncodedPoint() {
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            double[] bounds = GeoHash.bounds(GeoHash.encode(latitude, longitude, PRECISION));
+            assertTrue(bounds[0] <= latitude && latitude <= bounds[2]);
+            assertTrue(bounds[1] <= longitude && longitude <= bounds[3]);
+        }
+    }
+
+    @Test
+    public void cover_containsRandomBoxes() {
+        Random random = new Random(11);
+        for (int i = 0; i < 300; i++) {
+            double height = 0.001 + random.nextDouble() * 0.2;
+            double width = 0.001 + random.nextDouble() * 0.2;
+            double minLat = 19.07 + (random.nextDouble() - 0.5) * 0.5;
+            double minLng = 72.87 + (random.nextDouble() - 0.5) * 0.5;
+            assertCovers(minLat, minLng, minLat + height, minLng + width);
+        }
+    }
+
+    @Test
+    public void cover_containsBoxesOnCellEdges() {
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            double[] cell = GeoHash.bounds(GeoHash.encode(
+                    19.07 + (random.nextDouble() - 0.5) * 0.5, 72.87 + (random.nextDouble() - 0.5) * 0.5, PRECISION));
+            double height = cell[2] - cell[0];
+            double width = cell[3] - cell[1];
+            int rows = 1 + random.nextInt(3);
+            int cols = 1 + random.nextInt(3);
+
+            // Exactly one or a few whole cells, so every edge of the box is a cell edge
+            assertCovers(cell[0], cell[1], cell[0] + rows * height, cell[1] + cols * width);
+            // Just a corner point and a single edge line
+            assertCovers(cell[0], cell[1], cell[0], cell[1]);
+            assertCovers(cell[2], cell[1], cell[2], cell[3]);
+        }
+    }
+
+    @Test
+    public void cover_containsBoxesAtTheEdgesOfTheWorld() {
+        assertCovers(89.9, 10, 90, 10.2);
+        assertCovers(-90, -10, -89.9, -9.8);
+        assertCovers(0, 179.9, 0.1, 180);
+        assertCovers(0, -180, 0.1, -179.9);
+        // Boxes crossing the antimeridian fall back to the whole longitude span
+        assertCovers(-17.1, 179.95, -17.0, -179.95);
+    }
+
+    @Test
+    public void coverRadius_containsCircle() {
+        Random random = new Random(8);
+        for (int i = 0; i < 100; i++) {
+            double latitude = 12.97 + (random.nextDouble() - 0.5) * 0.5;
+            double longitude = 77.59 + (random.nextDouble() - 0.5) * 0.5;
+            double radius = 100 + random.nextDouble() * 10000;
+            List<GeoHash.Range> ranges = GeoHash.coverRadius(latitude, longitude, radius, PRECISION, MAX_CELLS);
+            for (int j = 0; j < 36; j++) {
+                // Points on the circle itself
+                double bearing = Math.toRadians(j * 10);
+                double dLat = Math.toDegrees(radius / 6371000) * Math.cos(bearing);
+                double dLng = Math.toDegrees(radius / 6371000) * Math.sin(bearing)
+                        / Math.cos(Math.toRadians(latitude));
+                assertCovered(ranges, latitude + dLat * 0.999, longitude + dLng * 0.999);
+            }
+        }
+    }
+
+    @Test
+    public void cover_mergesCellsIntoOrderedRanges() {
+        List<GeoHash.Range> ranges = GeoHash.cover(19.0, 72.8, 19.1, 72.9, PRECISION, MAX_CELLS);
+        assertFalse(ranges.isEmpty());
+        for (int i = 1; i < ranges.size(); i++) {
+            assertTrue(ranges.get(i - 1).getEnd().compareTo(ranges.get(i).getStart()) < 0);
+        }
+        for (GeoHash.Range range : ranges) {
+            assertTrue(range.getStart().length() <= PRECISION);
+            assertTrue(range.getStart().compareTo(range.getEnd()) <= 0);
+        }
+    }
+
+    /**
+     * Sample the box's corners, edges and inside, including every cell edge
+     * line crossing it, and check each point's indexed key is in some range
+     */
+    private static void assertCovers(double minLat, double minLng, double maxLat, double maxLng) {
+        List<GeoHash.Range> ranges = GeoHash.cover(minLat, minLng, maxLat, maxLng, PRECISION, MAX_CELLS);
+        double lngTo = maxLng >= minLng ? maxLng : maxLng + 360;
+        int steps = 8;
+        for (int i = 0; i <= steps; i++) {
+            for (int j = 0; j <= steps; j++) {
+                double latitude = minLat + (maxLat - minLat) * i / steps;
+                double longitude = minLng + (lngTo - minLng) * j / steps;
+                assertCovered(ranges, latitude, longitude > 180 ? longitude - 360 : longitude);
+            }
+        }
+
+        // Cell edges inside the box, where a point belongs to the cell above or to the right
+        double[] cell = GeoHash.bounds(GeoHash.encode(minLat, minLng, PRECISION));
+        double height = cell[2] - cell[0];
+        double width = cell[3] - cell[1];
+        if (maxLng >= minLng && (maxLat - minLat) / height < 50 && (maxLng - minLng) / width < 50) {
+            for (double latitude = cell[0]; latitude <= maxLat; latitude += height) {
+                for (double longitude = cell[1]; longitude <= maxLng; longitude += width) {
+                    double clampedLat = Math.max(minLat, latitude);
+                    double clampedLng = Math.max(minLng, longitude);
+                    assertCovered(ranges, clampedLat, clampedLng);
+                    assertCovered(ranges, clampedLat, maxLng);
+                    assertCovered(ranges, maxLat, clampedLng);
+                }
+            }
+        }
+    }
+
+    private static void assertCovered(List<GeoHash.Range> ranges, double latitude, double longitude) {
+        String hash = GeoHash.encode(latitude, longitude, PRECISION);
+        for (GeoHash.Range range : ranges) {
+            if (range.contains(hash)) return;
+        }
+        fail("Key " + hash + " of " + latitude + "," + longitude + " not in " + ranges);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.xavierproject;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that ReportClusterer's grid clusters split cleanly from one zoom level to the next.
+ */
+public class ReportClustererTest {
+
+    // Grid cells across the world at zoom 0, 256 px tiles over 80 px cells
+    private static final double CELLS_AT_ZOOM_0 = 256.0 / 80;
+
+    @Test
+    public void clusters_nestAcrossZoomLevels() {
+        Random random = new Random(99);
+        List<ReportGeoIndex.Entry> reports = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            reports.add(entry("r" + i, 19.07 + (random.nextDouble() - 0.5) * 0.5,
+                    72.87 + (random.nextDouble() - 0.5) * 0.5));
+        }
+
+        for (int zoom = 0; zoom < 17; zoom++) {
+            List<ReportClusterer.Cluster> parents = ReportClusterer.clusterNow(reports, zoom);
+            Map<String, Integer> childCounts = new HashMap<>();
+            // Clusters of one level sit in disjoint grid cells, so a cluster one level
+            // in lies inside exactly one of their bounds unless it straddles two cells
+            for (ReportClusterer.Cluster child : ReportClusterer.clusterNow(reports, zoom + 1)) {
+                ReportClusterer.Cluster parent = null;
+                for (ReportClusterer.Cluster candidate : parents) {
+                    if (contains(candidate.getBounds(), child.getBounds())) {
+                        assertNull("Cluster inside two clusters at zoom " + zoom, parent);
+                        parent = candidate;
+                    }
+                }
+                assertNotNull("Cluster split across zoom " + zoom, parent);
+                Integer count = childCounts.get(parent.getKey());
+                childCounts.put(parent.getKey(), (count != null ? count : 0) + child.getCount());
+            }
+            for (ReportClusterer.Cluster parent : parents) {
+                assertEquals(parent.getCount(), (int) childCounts.get(parent.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void reportsEitherSideOfGridLine_mergeOnlyBelowIt() {
+        // An odd grid line at zoom 10 is not a grid line at zoom 9
+        int line = 2301;
+        double longitude = line / (CELLS_AT_ZOOM_0 * (1 << 10)) * 360 - 180;
+        List<ReportGeoIndex.Entry> reports = new ArrayList<>();
+        reports.add(entry("west", 19.07, longitude - 1e-6));
+        reports.add(entry("east", 19.07, longitude + 1e-6));
+
+        for (int zoom = 10; zoom < 17; zoom++) {
+            List<ReportClusterer.Cluster> clusters = ReportClusterer.clusterNow(reports, zoom);
+            assertEquals("Merged at zoom " + zoom, 2, clusters.size());
+        }
+
+        List<ReportClusterer.Cluster> merged = ReportClusterer.clusterNow(reports, 9);
+        assertEquals(1, merged.size());
+        assertEquals(2, merged.get(0).getCount());
+        assertTrue(merged.get(0).getKey().startsWith("cluster/9/"));
+        assertNull(merged.get(0).getSingleReport());
+    }
+
+    @Test
+    public void maxZoom_givesEveryReportItsOwnMarker() {
+        List<ReportGeoIndex.Entry> reports = new ArrayList<>();
+        reports.add(entry("a", 19.07, 72.87));
+        reports.add(entry("b", 19.07, 72.87));
+        reports.add(entry("c", 19.0701, 72.8701));
+
+        assertEquals(1, ReportClusterer.clusterNow(reports, 16).size());
+
+        for (int zoom : new int[]{17, 21}) {
+            List<ReportClusterer.Cluster> clusters = ReportClusterer.clusterNow(reports, zoom);
+            assertEquals(3, clusters.size());
+            Set<String> keys = new HashSet<>();
+            for (ReportClusterer.Cluster cluster : clusters) {
+                assertEquals(1, cluster.getCount());
+                assertEquals(cluster.getSingleReport().getReportId(), cluster.getKey());
+                keys.add(cluster.getKey());
+            }
+            assertEquals(3, keys.size());
+        }
+    }
+
+    @Test
+    public void categoryCounts_addUpPerCluster() {
+        List<ReportGeoIndex.Entry> reports = new ArrayList<>();
+        reports.add(entry("a", 19.07, 72.87, "Water"));
+        reports.add(entry("b", 19.07, 72.87, "Road"));
+        reports.add(entry("c", 19.07, 72.87, "Water"));
+        reports.add(entry("d", 19.07, 72.87, "Unheard of"));
+
+        List<ReportClusterer.Cluster> clusters = ReportClusterer.clusterNow(reports, 12);
+        assertEquals(1, clusters.size());
+        Map<String, Integer> counts = clusters.get(0).getCategoryCounts();
+        assertEquals(3, counts.size());
+        assertEquals(2, (int) counts.get("Water"));
+        assertEquals(1, (int) counts.get("Road"));
+        assertEquals(1, (int) counts.get("Other"));
+        assertEquals("Water: 2, Road: 1, Other: 1", clusters.get(0).describeCategories());
+
+        ReportClusterer.Cluster single = ReportClusterer.clusterNow(reports.subList(0, 1), 12).get(0);
+        assertEquals(1, (int) single.getCategoryCounts().get("Water"));
+    }
+
+    @Test
+    public void manyReports_clusterQuicklyAtHighZoom() {
+        Random random = new Random(17);
+        List<ReportGeoIndex.Entry> reports = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            reports.add(entry("r" + i, 19.07 + (random.nextDouble() - 0.5) * 0.5,
+                    72.87 + (random.nextDouble() - 0.5) * 0.5,
+                    ReportFragment.CATEGORIES[i % ReportFragment.CATEGORIES.length]));
+        }
+
+        // Best of a few runs, so JIT warm-up and a stray GC pause don't count
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 10; run++) {
+            long start = System.nanoTime();
+            List<ReportClusterer.Cluster> clusters = ReportClusterer.clusterNow(reports, 16);
+            best = Math.min(best, (System.nanoTime() - start) / 1000000);
+            assertFalse(clusters.isEmpty());
+        }
+        assertTrue("Clustering took " + best + " ms", best < 100);
+    }
+
+    @Test
+    public void noReports_noClusters() {
+        assertTrue(ReportClusterer.clusterNow(new ArrayList<>(), 12).isEmpty());
+        assertTrue(ReportClusterer.clusterNow(new ArrayList<>(), 18).isEmpty());
+    }
+
+    /**
+     * Whether bounds {minLat, minLng, maxLat, maxLng} contain other bounds
+     */
+    private static boolean contains(double[] outer, double[] inner) {
+        return outer[0] <= inner[0] && outer[1] <= inner[1] && outer[2] >= inner[2] && outer[3] >= inner[3];
+    }
+
+    private static ReportGeoIndex.Entry entry(String id, double latitude, double longitude) {
+        return entry(id, latitude, longitude, "Road");
+    }
+
+    private static ReportGeoIndex.Entry entry(String id, double latitude, double longitude, String category) {
+        return new ReportGeoIndex.Entry(id, "Report " + id, category, "", "pending", latitude, longitude, 0);
+    }
+}
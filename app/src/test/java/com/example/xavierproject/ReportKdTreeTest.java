@@ -0,0 +1,181 @@
+package com.example.xavierproject;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks ReportKdTree lookups against a brute-force scan of the same reports.
+ */
+public class ReportKdTreeTest {
+
+    @Test
+    public void emptyTree_findsNothing() {
+        ReportKdTree tree = new ReportKdTree();
+        assertTrue(tree.within(19.07, 72.87, 5000).isEmpty());
+        assertTrue(tree.nearest(19.07, 72.87, 3).isEmpty());
+
+        tree.put(entry("a", 19.07, 72.87));
+        tree.remove("a");
+        assertEquals(0, tree.size());
+        assertTrue(tree.within(19.07, 72.87, 5000).isEmpty());
+        assertTrue(tree.nearest(19.07, 72.87, 3).isEmpty());
+    }
+
+    @Test
+    public void within_matchesBruteForce() {
+        Random random = new Random(42);
+        List<ReportGeoIndex.Entry> reports = randomReports(random, 500, 19.07, 72.87, 0.3);
+        ReportKdTree tree = new ReportKdTree();
+        tree.sync(reports);
+
+        for (int i = 0; i < 50; i++) {
+            double latitude = 19.07 + (random.nextDouble() - 0.5) * 0.6;
+            double longitude = 72.87 + (random.nextDouble() - 0.5) * 0.6;
+            double radius = 200 + random.nextDouble() * 20000;
+            assertWithinMatches(reports, tree, latitude, longitude, radius);
+        }
+
+        // Removed and moved reports must drop out of the old spot
+        List<ReportGeoIndex.Entry> remaining = new ArrayList<>();
+        for (int i = 0; i < reports.size(); i++) {
+            ReportGeoIndex.Entry report = reports.get(i);
+            if (i % 3 == 0) {
+                tree.remove(report.getReportId());
+            } else if (i % 3 == 1) {
+                ReportGeoIndex.Entry moved = entry(report.getReportId(),
+                        report.getLatitude() + 0.01, report.getLongitude() - 0.01);
+                tree.put(moved);
+                remaining.add(moved);
+            } else {
+                remaining.add(report);
+            }
+        }
+        assertEquals(remaining.size(), tree.size());
+        for (int i = 0; i < 50; i++) {
+            double latitude = 19.07 + (random.nextDouble() - 0.5) * 0.6;
+            double longitude = 72.87 + (random.nextDouble() - 0.5) * 0.6;
+            assertWithinMatches(remaining, tree, latitude, longitude, 200 + random.nextDouble() * 20000);
+        }
+    }
+
+    @Test
+    public void within_acrossAntimeridian() {
+        Random random = new Random(7);
+        List<ReportGeoIndex.Entry> reports = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            double longitude = 179.8 + random.nextDouble() * 0.4;
+            if (longitude > 180) longitude -= 360;
+            reports.add(entry("r" + i, -17.0 + (random.nextDouble() - 0.5) * 0.4, longitude));
+        }
+        ReportKdTree tree = new ReportKdTree();
+        tree.sync(reports);
+
+        assertWithinMatches(reports, tree, -17.0, 179.99, 15000);
+        assertWithinMatches(reports, tree, -17.0, -179.99, 15000);
+        assertWithinMatches(reports, tree, -17.0, 180, 25000);
+
+        // Both sides of the antimeridian come back
+        boolean east = false;
+        boolean west = false;
+        for (ReportGeoIndex.Entry report : tree.within(-17.0, 179.99, 15000)) {
+            if (report.getLongitude() > 0) east = true; else west = true;
+        }
+        assertTrue(east && west);
+    }
+
+    @Test
+    public void nearest_matchesBruteForce() {
+        Random random = new Random(1234);
+        List<ReportGeoIndex.Entry> reports = randomReports(random, 400, 12.97, 77.59, 0.25);
+        ReportKdTree tree = new ReportKdTree();
+        tree.sync(reports);
+
+        for (int i = 0; i < 50; i++) {
+            double latitude = 12.97 + (random.nextDouble() - 0.5) * 0.5;
+            double longitude = 77.59 + (random.nextDouble() - 0.5) * 0.5;
+            for (int k : new int[]{1, 5, 20}) {
+                assertNearestMatches(reports, tree, latitude, longitude, k);
+            }
+        }
+        assertEquals(reports.size(), tree.nearest(12.97, 77.59, 1000).size());
+        assertTrue(tree.nearest(12.97, 77.59, 0).isEmpty());
+    }
+
+    @Test
+    public void nearest_acrossAntimeridian() {
+        ReportKdTree tree = new ReportKdTree();
+        tree.put(entry("west", 0, -179.999));
+        tree.put(entry("east", 0, 179.9));
+        tree.put(entry("far", 0, 170));
+
+        List<ReportGeoIndex.Entry> nearest = tree.nearest(0, 179.999, 2);
+        assertEquals(2, nearest.size());
+        assertEquals("west", nearest.get(0).getReportId());
+        assertEquals("east", nearest.get(1).getReportId());
+
+        assertEquals("east", tree.nearest(0, -179.95, 3).get(1).getReportId());
+    }
+
+    private static void assertWithinMatches(List<ReportGeoIndex.Entry> reports, ReportKdTree tree,
+                                            double latitude, double longitude, double radius) {
+        List<String> expected = new ArrayList<>();
+        for (ReportGeoIndex.Entry report : reports) {
+            if (report.distanceTo(latitude, longitude) <= radius) {
+                expected.add(report.getReportId());
+            }
+        }
+        List<ReportGeoIndex.Entry> found = tree.within(latitude, longitude, radius);
+        List<String> actual = new ArrayList<>();
+        double previous = 0;
+        for (ReportGeoIndex.Entry report : found) {
+            actual.add(report.getReportId());
+            double distance = report.distanceTo(latitude, longitude);
+            assertTrue("Not closest first", distance >= previous);
+            previous = distance;
+        }
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * The tree ranks by projected distance, so allow for the small change
+     * in map scale across the query area when comparing with great-circle distance
+     */
+    private static void assertNearestMatches(List<ReportGeoIndex.Entry> reports, ReportKdTree tree,
+                                             double latitude, double longitude, int k) {
+        List<Double> distances = new ArrayList<>();
+        for (ReportGeoIndex.Entry report : reports) {
+            distances.add(report.distanceTo(latitude, longitude));
+        }
+        Collections.sort(distances);
+        double kth = distances.get(Math.min(k, distances.size()) - 1);
+
+        List<ReportGeoIndex.Entry> found = tree.nearest(latitude, longitude, k);
+        assertEquals(Math.min(k, reports.size()), found.size());
+        for (ReportGeoIndex.Entry report : found) {
+            assertTrue(report.distanceTo(latitude, longitude) <= kth * 1.01 + 0.001);
+        }
+    }
+
+    private static List<ReportGeoIndex.Entry> randomReports(Random random, int count,
+                                                           double latitude, double longitude, double span) {
+        List<ReportGeoIndex.Entry> reports = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            reports.add(entry("r" + i,
+                    latitude + (random.nextDouble() - 0.5) * 2 * span,
+                    longitude + (random.nextDouble() - 0.5) * 2 * span));
+        }
+        return reports;
+    }
+
+    private static ReportGeoIndex.Entry entry(String id, double latitude, double longitude) {
+        return new ReportGeoIndex.Entry(id, "Report " + id, "Road", "", "pending", latitude, longitude, 0);
+    }
+}